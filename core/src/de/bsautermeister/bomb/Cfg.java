@@ -17,6 +17,11 @@ public interface Cfg {
     boolean RECORD_MODE = false;
 
     String SAVE_GAME_FILE = "save.bin";
+    /**
+     * Version of the format of the saved game, which has to be increased with any incompatible
+     * change of a serializer. Saved games of other versions are discarded.
+     */
+    int SAVE_GAME_VERSION = 2;
     float GAME_OVER_DELAY = 3f;
     float DEPTH_TO_SCORE_FACTOR = 10f;
 
@@ -42,6 +47,103 @@ public interface Cfg {
         int FRAGMENTS_NUM_COLS = 24;
         int FRAGMENTS_NUM_COMPLETE_ROWS = 6;
         int FRAGMENT_RESOLUTION = 16;
+        /**
+         * Merges the triangles of the fragment outlines to convex polygons, to reduce the number
+         * of fixtures of each fragment.
+         */
+        boolean CONVEX_DECOMPOSITION = true;
+        /**
+         * Tolerance by which the outlines of the collision geometry get simplified, whereas the
+         * rendered geometry keeps the full detail of the outlines. It has to stay below half of
+         * the distance of the grid positions of the full resolution, otherwise it gets limited
+         * there.
+         */
+        float COLLISION_SIMPLIFY_TOLERANCE_PPM = 0.14f / World.PPM;
+        /**
+         * Maximum number of distinct fragment states whose fixture polygons are cached.
+         */
+        int GEOMETRY_CACHE_SIZE = 256;
+        /**
+         * Minimum number of fragments carved within a frame to compute their geometry on worker
+         * threads, below which the overhead of the hand-off outweighs the gain.
+         */
+        int PARALLEL_REBUILD_MIN_FRAGMENTS = 4;
+        /**
+         * Number of rows and columns of fragments that share a single static body, which keeps
+         * the number of bodies in the physics world low. A size of 1 gives each fragment a body
+         * of its own.
+         */
+        int BODY_CHUNK_SIZE = 4;
+        /**
+         * Computes the collision geometry per chunk from the stitched grids of its fragments, so
+         * that there are no vertices and fixtures along the fragment borders. This requires the
+         * stitched grid to not exceed the maximum resolution of the fragment data, and falls
+         * back to the geometry per fragment otherwise. Off by default, because the chunks are
+         * rebuilt on the main thread, which costs more per carve than the fewer vertices save.
+         */
+        boolean SEAMLESS_CHUNKS = false;
+        /**
+         * Minimum number of solid fragments that get merged into a region with a single box
+         * body, below which the fragments keep bodies of their own.
+         */
+        int SOLID_REGION_MIN_FRAGMENTS = 4;
+        /**
+         * Number of frames between the merges of the solid fragments in the rows that got
+         * impacted since the last merge, which batches the body updates of many impacts.
+         */
+        int SOLID_REGION_MERGE_INTERVAL_FRAMES = 60;
+        /**
+         * Vertical distance beyond the camera view, within which ground rows are kept alive. It
+         * covers the rays that are cast from above to find the targets of air strikes.
+         */
+        float KEEP_ALIVE_DISTANCE_PPM = 100f / World.PPM;
+        /**
+         * Vertical distance around each bomb, within which ground rows are kept alive, so that
+         * the ground the bomb hits exists in the physics world.
+         */
+        float KEEP_ALIVE_BOMB_DISTANCE_PPM = 10f / World.PPM;
+        /**
+         * Time the bombs are looked ahead along their vertical velocity, which extends the kept
+         * alive range of fast bombs in the direction they move.
+         */
+        float KEEP_ALIVE_BOMB_LOOKAHEAD_SECONDS = 0.5f;
+        /**
+         * Number of frames a ground row stays in the physics world after it was kept alive or
+         * impacted the last time, which avoids evicting and restoring rows back and forth.
+         */
+        int EVICTION_DELAY_FRAMES = 120;
+        /**
+         * Moves the grid data of evicted rows out of the Java heap into a memory mapped spill
+         * file, from which the rows get read back when they are restored. This keeps the heap
+         * independent of the depth the player has dug.
+         */
+        boolean SPILL_EVICTED_ROWS = true;
+        /**
+         * Resolution of the collision geometry of fragments outside of the detail range. The
+         * full resolution minus one has to be a multiple of this resolution minus one.
+         */
+        int COARSE_FRAGMENT_RESOLUTION = 6;
+        /**
+         * Vertical distance beyond the camera view, the player and bombs, within which the ground
+         * rows use their full collision geometry.
+         */
+        float DETAIL_DISTANCE_PPM = 20f / World.PPM;
+        /**
+         * Number of frames a ground row keeps its full collision geometry after it was in the
+         * detail range or impacted the last time, before it switches to coarse geometry.
+         */
+        int COARSE_DELAY_FRAMES = 60;
+        /**
+         * Distance and time the player is looked ahead while moving downwards, within which the
+         * ground rows are generated before they are needed.
+         */
+        float ROW_LOOKAHEAD_DISTANCE_PPM = 50f / World.PPM;
+        float ROW_LOOKAHEAD_SECONDS = 1f;
+        /**
+         * Maximum number of requested rows added per update, which spreads their physics body
+         * updates over several frames.
+         */
+        int MAX_NEW_ROWS_PER_UPDATE = 1;
     }
 
     interface Player {
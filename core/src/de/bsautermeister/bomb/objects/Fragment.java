@@ -7,11 +7,11 @@ import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.Body;
 import com.badlogic.gdx.physics.box2d.BodyDef;
-import com.badlogic.gdx.physics.box2d.Fixture;
 import com.badlogic.gdx.physics.box2d.FixtureDef;
-import com.badlogic.gdx.physics.box2d.PolygonShape;
 import com.badlogic.gdx.physics.box2d.World;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
 import com.badlogic.gdx.utils.ShortArray;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
@@ -20,27 +20,152 @@ import com.esotericsoftware.kryo.io.Output;
 
 import de.bsautermeister.bomb.Cfg;
 import de.bsautermeister.bomb.contact.Bits;
+import de.bsautermeister.bomb.utils.ConvexDecompositionUtils;
+import de.bsautermeister.bomb.utils.PolygonUtils;
 
 public class Fragment {
 
+    public enum ColliderType {
+        /**
+         * Convex polygons of the triangulated outlines, which are solid.
+         */
+        POLYGONS,
+        /**
+         * A chain loop per outline, which only collides at the boundary and needs a single
+         * fixture per outline.
+         */
+        CHAIN_LOOPS
+    }
+
+    /**
+     * Collider type selected on the main thread, which is read by the workers computing the
+     * geometry.
+     */
+    private static volatile ColliderType colliderType = ColliderType.POLYGONS;
+
     private static final float EPSILON = 1e-5f;
-    private static final EarClippingTriangulator TRIANGULATOR = new EarClippingTriangulator();
+    /**
+     * Minimum distance between adjacent vertices of a chain loop, which is above the linear slop
+     * of Box2D.
+     */
+    private static final float MIN_LOOP_VERTEX_DISTANCE = 0.01f;
+    /**
+     * Upper bound of the simplification tolerance relative to the distance of the grid positions,
+     * which has to stay below one half.
+     */
+    private static final float MAX_SIMPLIFY_TOLERANCE_CELLS = 0.45f;
+    /**
+     * Triangulator per thread, because the geometry of different fragments can be computed in
+     * parallel.
+     */
+    private static final ThreadLocal<EarClippingTriangulator> TRIANGULATOR = new ThreadLocal<EarClippingTriangulator>() {
+        @Override
+        protected EarClippingTriangulator initialValue() {
+            return new EarClippingTriangulator();
+        }
+    };
+    /**
+     * Maximum number of vertices of a polygon shape in Box2D.
+     */
+    private static final int MAX_POLYGON_VERTICES = 8;
+
+    private static final BodyDef BODY_DEF = new BodyDef();
+    static final FixtureDef FIXTURE_DEF = new FixtureDef();
+    static {
+        BODY_DEF.type = BodyDef.BodyType.StaticBody;
+        FIXTURE_DEF.density = 1f;
+        FIXTURE_DEF.friction = 0.9f;
+        FIXTURE_DEF.filter.categoryBits = Bits.GROUND;
+        FIXTURE_DEF.filter.maskBits = Bits.OBJECTS | Bits.BALL_SENSOR;
+    }
+
+    private static final FragmentGeometryCache GEOMETRY_CACHE =
+            new FragmentGeometryCache(Cfg.Ground.GEOMETRY_CACHE_SIZE);
+
+    /**
+     * Variants of the cached polygons, because the render and the collision polygons of the same
+     * grid contents differ, as well as the polygons of the different outline engines and
+     * collider types.
+     */
+    private enum GeometryVariant {
+        RENDER_CLUSTER_TRACING,
+        RENDER_MARCHING_SQUARES,
+        POLYGONS_CLUSTER_TRACING,
+        POLYGONS_MARCHING_SQUARES,
+        CHAIN_LOOPS_CLUSTER_TRACING,
+        CHAIN_LOOPS_MARCHING_SQUARES;
+
+        private static final GeometryVariant[] VALUES = values();
+
+        static GeometryVariant render(FragmentData.OutlineEngine engine) {
+            return VALUES[engine.ordinal()];
+        }
+
+        static GeometryVariant collision(FragmentData.OutlineEngine engine, ColliderType colliderType) {
+            return VALUES[2 + 2 * colliderType.ordinal() + engine.ordinal()];
+        }
+    }
 
     private final World world;
     private final Rectangle bounds;
-    private final FragmentData fragmentData;
+    private FragmentData fragmentData;
 
     private Body body;
+    /**
+     * Chunk whose body is shared with other fragments, or null when the fragment has a body of
+     * its own.
+     */
+    private GroundChunk chunk;
+    private boolean archived;
+    private boolean merged;
+    private boolean dirty;
+    /**
+     * Whether the collision geometry is computed from a coarse sampling of the grid, which is
+     * used for fragments far from the action. The grid data itself keeps its full resolution.
+     */
+    private boolean coarse;
+
+    private final GroundFixtures fixtures = new GroundFixtures();
+
+    /**
+     * Convex polygons of the full-detail outlines, which get rendered instead of the fixtures.
+     */
+    private final FloatArray renderPolygons = new FloatArray(48);
+    private final IntArray renderVertexCounts = new IntArray(8);
 
     public Fragment(World world, float leftX, float bottomY, float size) {
-        this(world, leftX, bottomY, size, new FragmentData(Cfg.Ground.FRAGMENT_RESOLUTION, size));
+        this(world, leftX, bottomY, size, FragmentData.getSolidTemplate(Cfg.Ground.FRAGMENT_RESOLUTION, size));
     }
 
     public Fragment(World world, float leftX, float bottomY, float size, FragmentData fragmentData) {
+        this(world, leftX, bottomY, size, fragmentData, false);
+    }
+
+    /**
+     * Creates a fragment that is optionally merged into a {@link SolidRegion} right away, so that
+     * it does not create a body of its own.
+     */
+    Fragment(World world, float leftX, float bottomY, float size, FragmentData fragmentData, boolean merged) {
+        this(world, leftX, bottomY, size, fragmentData, merged, false);
+    }
+
+    /**
+     * Creates a fragment that is optionally archived right away, so that it does not create a
+     * body until it gets restored, such as when it is read back from the {@link GroundStore}.
+     */
+    Fragment(World world, float leftX, float bottomY, float size, FragmentData fragmentData,
+             boolean merged, boolean archived) {
+        if (merged && !fragmentData.isTemplate()) {
+            throw new IllegalArgumentException("Only solid fragments can be merged.");
+        }
         this.world = world;
         this.bounds = new Rectangle(leftX, bottomY, size, size);
         this.fragmentData = fragmentData;
-        updateBody();
+        this.merged = merged;
+        this.archived = archived;
+        if (!merged && !archived) {
+            updateBody();
+        }
     }
 
     private static final Circle tmpImpactCircle = new Circle();
@@ -52,46 +177,369 @@ public class Fragment {
             return 0;
         }
 
+        if (merged) {
+            throw new IllegalStateException("Merged fragments have to be unmerged before an impact.");
+        }
+
         float leftX = getLeftX();
         float bottomY = getBottomY();
         // change to relative position used in the fragment data
         tmpImpactCircle.set(position.x - leftX, position.y - bottomY, radius);
 
+        if (fragmentData.isTemplate()) {
+            if (!fragmentData.wouldRemove(tmpImpactCircle)) {
+                // the circle only overlaps the bounds between the grid positions
+                return 0;
+            }
+            // copy-on-write of the data that is shared by all untouched fragments
+            fragmentData = fragmentData.copy();
+        }
+
         int removed = fragmentData.removeWithPositions(
                 outRemovedVertices, offset, leftX, bottomY, tmpImpactCircle);
         if (removed > 0) {
-            world.destroyBody(body);
-            updateBody();
+            dirty = true;
         }
         return removed;
     }
 
+    /**
+     * Rebuilds the body after the fragment got carved by one or more impacts, so that multiple
+     * impacts within the same frame only cause a single rebuild. Returns whether the body got
+     * rebuilt.
+     */
+    public boolean rebuild() {
+        if (!dirty || archived) {
+            return false;
+        }
+        updateBody();
+        return true;
+    }
+
+    /**
+     * Destroys the body of this fragment while retaining its data, so that it does not occupy
+     * the physics world any longer until it gets restored.
+     */
+    public void archive() {
+        if (archived) {
+            return;
+        }
+        destroyBody();
+        renderPolygons.clear();
+        renderVertexCounts.clear();
+        archived = true;
+        invalidateChunk();
+    }
+
+    public void restore() {
+        if (!archived) {
+            return;
+        }
+        archived = false;
+        if (!merged) {
+            updateBody();
+        }
+    }
+
+    /**
+     * Hands the collision of this solid fragment over to a {@link SolidRegion}, which destroys
+     * the body of this fragment.
+     */
+    public void merge() {
+        if (!isSolid()) {
+            throw new IllegalStateException("Only solid fragments can be merged.");
+        }
+        destroyBody();
+        merged = true;
+        invalidateChunk();
+    }
+
+    /**
+     * Takes the collision of this fragment back from its {@link SolidRegion}.
+     */
+    public void unmerge() {
+        if (!merged) {
+            return;
+        }
+        merged = false;
+        if (!archived) {
+            updateBody();
+        }
+    }
+
+    /**
+     * Moves the fixtures of this fragment to the shared body of the given chunk, or to a body of
+     * its own when the chunk is null. The fragment does not have any fixtures of its own when
+     * the chunk computes seamless geometry.
+     */
+    void setChunk(GroundChunk chunk) {
+        if (this.chunk == chunk) {
+            return;
+        }
+        destroyBody();
+        this.chunk = chunk;
+        if (!archived && !merged) {
+            updateBody();
+        }
+    }
+
+    private boolean hasSeamlessChunk() {
+        return chunk != null && chunk.isSeamless();
+    }
+
+    /**
+     * Marks the chunk for a rebuild when it computes seamless geometry, because the collision
+     * of this fragment changed.
+     */
+    private void invalidateChunk() {
+        if (hasSeamlessChunk()) {
+            chunk.invalidate();
+        }
+    }
+
+    /**
+     * Switches between the coarse and the full collision geometry, which marks the fragment
+     * dirty so that its body gets updated on the next rebuild. Solid fragments are covered by
+     * a single box either way.
+     */
+    public void setCoarse(boolean coarse) {
+        if (this.coarse == coarse) {
+            return;
+        }
+        this.coarse = coarse;
+        if (hasSeamlessChunk()) {
+            // the chunk decides about its coarse geometry, whereas this fragment only renders
+            chunk.invalidate();
+        } else if (!isSolid()) {
+            dirty = true;
+        }
+    }
+
+    public boolean isCoarse() {
+        return coarse;
+    }
+
+    private static final FragmentGeometry tmpGeometry = new FragmentGeometry();
     private void updateBody() {
-        Array<float[]> polygonOutlines = fragmentData.computeOutlines();
-        if (polygonOutlines.notEmpty()) {
-            body = createBody(getLeftX(), getBottomY(), polygonOutlines);
-        } else  {
-            // mark empty
-            body = null;
+        computeGeometry(tmpGeometry);
+        commitGeometry(tmpGeometry);
+    }
+
+    /**
+     * Selects the type of the colliders of all fragments, which applies to the fragments whose
+     * geometry gets computed afterwards.
+     */
+    public static void setColliderType(ColliderType type) {
+        colliderType = type;
+    }
+
+    public static ColliderType getColliderType() {
+        return colliderType;
+    }
+
+    /**
+     * Computes the collision geometry of the fixtures and the convex polygons of the rendering.
+     * This does not touch the physics world, so that the geometry of different fragments can be
+     * computed on worker threads in parallel.
+     */
+    public void computeGeometry(FragmentGeometry outGeometry) {
+        ColliderType colliderType = Fragment.colliderType;
+        outGeometry.clear();
+        outGeometry.setColliderType(colliderType);
+        FloatArray collisionPolygons = outGeometry.getCollisionPolygons();
+        IntArray collisionVertexCounts = outGeometry.getCollisionVertexCounts();
+        FloatArray renderPolygons = outGeometry.getRenderPolygons();
+        IntArray renderVertexCounts = outGeometry.getRenderVertexCounts();
+        FragmentData.OutlineEngine engine = FragmentData.getOutlineEngine();
+        if (fragmentData.isTemplate()) {
+            // untouched fragments are covered by a single box
+            float size = getSize();
+            renderPolygons.addAll(0f, 0f, size, 0f, size, size, 0f, size);
+            renderVertexCounts.add(4);
+            if (!hasSeamlessChunk()) {
+                collisionPolygons.addAll(renderPolygons);
+                collisionVertexCounts.addAll(renderVertexCounts);
+            }
+            return;
+        }
+
+        Array<float[]> outlines = null;
+        GeometryVariant renderVariant = GeometryVariant.render(engine);
+        if (!GEOMETRY_CACHE.get(fragmentData, renderVariant, renderPolygons, renderVertexCounts)) {
+            outlines = fragmentData.computeOutlines(engine);
+            computePolygons(outlines, renderPolygons, renderVertexCounts);
+            GEOMETRY_CACHE.put(fragmentData, renderVariant, renderPolygons, renderVertexCounts);
+        }
+
+        if (hasSeamlessChunk()) {
+            // the collision geometry is computed by the chunk across the fragment borders
+            return;
+        }
+
+        FragmentData data = fragmentData;
+        if (coarse) {
+            data = fragmentData.downsample(Cfg.Ground.COARSE_FRAGMENT_RESOLUTION);
+            outlines = null;
+        }
+        GeometryVariant collisionVariant = GeometryVariant.collision(engine, colliderType);
+        if (!GEOMETRY_CACHE.get(data, collisionVariant, collisionPolygons, collisionVertexCounts)) {
+            if (outlines == null) {
+                outlines = data.computeOutlines(engine);
+            }
+            computeCollisionGeometry(outlines, data.getDelta(), colliderType, collisionPolygons, collisionVertexCounts);
+            GEOMETRY_CACHE.put(data, collisionVariant, collisionPolygons, collisionVertexCounts);
+        }
+        if (coarse) {
+            data.releaseOutlines();
         }
     }
 
-    private Body createBody(float leftX, float bottomY, Array<float[]> polygonOutlines) {
-        BodyDef bodyDef = new BodyDef();
-        bodyDef.position.set(leftX, bottomY);
-        bodyDef.type = BodyDef.BodyType.StaticBody;
+    /**
+     * Computes the polygons of the collision fixtures of the given outlines, which get simplified
+     * before. The outlines run through grid positions of the given distance.
+     */
+    static void computeCollisionGeometry(Array<float[]> outlines, float cellSize, ColliderType colliderType,
+                                         FloatArray outPolygons, IntArray outVertexCounts) {
+        Array<float[]> simplified = simplifyOutlines(outlines, getSimplifyTolerance(cellSize));
+        if (colliderType == ColliderType.CHAIN_LOOPS) {
+            computeLoops(simplified, outPolygons, outVertexCounts);
+        } else {
+            computePolygons(simplified, outPolygons, outVertexCounts);
+        }
+        simplified.clear();
+    }
 
-        Body body = world.createBody(bodyDef);
+    /**
+     * Gets the tolerance of the simplification, which is {@link Cfg.Ground#COLLISION_SIMPLIFY_TOLERANCE_PPM}
+     * but stays below half of the distance of the grid positions. Otherwise the simplified
+     * outline could cut off single grid positions, or close gaps of a single grid position.
+     */
+    static float getSimplifyTolerance(float cellSize) {
+        return Math.min(Cfg.Ground.COLLISION_SIMPLIFY_TOLERANCE_PPM, MAX_SIMPLIFY_TOLERANCE_CELLS * cellSize);
+    }
 
-        PolygonShape shape = new PolygonShape();
-        FixtureDef fixtureDef = new FixtureDef();
-        fixtureDef.density = 1f;
-        fixtureDef.friction = 0.9f;
-        fixtureDef.filter.categoryBits = Bits.GROUND;
-        fixtureDef.filter.maskBits = Bits.OBJECTS | Bits.BALL_SENSOR;
-        fixtureDef.shape = shape;
+    private static final ThreadLocal<Array<float[]>> tmpSimplified = new ThreadLocal<Array<float[]>>() {
+        @Override
+        protected Array<float[]> initialValue() {
+            return new Array<>();
+        }
+    };
+    /**
+     * Simplifies the outlines by the given tolerance into a buffer of the current thread, and
+     * drops outlines that collapse to less than three vertices.
+     */
+    private static Array<float[]> simplifyOutlines(Array<float[]> outlines, float tolerance) {
+        Array<float[]> result = tmpSimplified.get();
+        result.clear();
+        for (float[] outline : outlines) {
+            float[] simplified = PolygonUtils.simplifyOutline(outline, tolerance);
+            if (simplified != null) {
+                result.add(simplified);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the chain loops of the fixtures, which drops vertices that are too close to the
+     * previous one, as well as loops that are left with less than three vertices.
+     */
+    private static void computeLoops(Array<float[]> outlines, FloatArray outLoops, IntArray outVertexCounts) {
+        float minDistance2 = MIN_LOOP_VERTEX_DISTANCE * MIN_LOOP_VERTEX_DISTANCE;
+        for (float[] outline : outlines) {
+            int start = outLoops.size;
+            for (int k = 0; k < outline.length; k += 2) {
+                float x = outline[k];
+                float y = outline[k + 1];
+                if (outLoops.size > start && Vector2.dst2(x, y,
+                        outLoops.get(outLoops.size - 2), outLoops.get(outLoops.size - 1)) < minDistance2) {
+                    continue;
+                }
+                outLoops.add(x, y);
+            }
+            // the loop gets closed from the last to the first vertex
+            while (outLoops.size - start >= 4 && Vector2.dst2(outLoops.get(start), outLoops.get(start + 1),
+                    outLoops.get(outLoops.size - 2), outLoops.get(outLoops.size - 1)) < minDistance2) {
+                outLoops.size -= 2;
+            }
+
+            int vertexCount = (outLoops.size - start) / 2;
+            if (vertexCount < 3) {
+                outLoops.size = start;
+            } else {
+                outVertexCounts.add(vertexCount);
+            }
+        }
+    }
+
+    /**
+     * Updates the body and the render polygons to the geometry computed by
+     * {@link #computeGeometry(FragmentGeometry)}. This has to be called on the main thread.
+     */
+    public void commitGeometry(FragmentGeometry geometry) {
+        dirty = false;
+        invalidateChunk();
+        renderPolygons.clear();
+        renderPolygons.addAll(geometry.getRenderPolygons());
+        renderVertexCounts.clear();
+        renderVertexCounts.addAll(geometry.getRenderVertexCounts());
+
+        IntArray vertexCounts = geometry.getCollisionVertexCounts();
+        if (vertexCounts.size == 0) {
+            // nothing to collide with, although there might be slivers left to render
+            destroyBody();
+            return;
+        }
+
+        if (body == null) {
+            body = createBody();
+        }
+        // the polygons are relative to the fragment, which is not the origin of a shared body
+        float bodyOffsetX = chunk != null ? getLeftX() - chunk.getX() : 0f;
+        float bodyOffsetY = chunk != null ? getBottomY() - chunk.getY() : 0f;
+        fixtures.update(body, geometry.getCollisionPolygons(), vertexCounts, geometry.getColliderType(),
+                bodyOffsetX, bodyOffsetY, this);
+    }
+
+    private Body createBody() {
+        if (chunk != null) {
+            return chunk.obtainBody();
+        }
+        BODY_DEF.position.set(getLeftX(), getBottomY());
+        return world.createBody(BODY_DEF);
+    }
+
+    private void destroyBody() {
+        if (body != null) {
+            if (chunk != null) {
+                // the body is shared, so that only the fixtures of this fragment are removed
+                fixtures.destroy(body);
+                chunk.releaseBody();
+            } else {
+                world.destroyBody(body);
+            }
+            body = null;
+        }
+        fixtures.clear();
+    }
+
+    private static final ThreadLocal<ShortArray> tmpTriangles = new ThreadLocal<ShortArray>() {
+        @Override
+        protected ShortArray initialValue() {
+            return new ShortArray();
+        }
+    };
+    /**
+     * Computes the convex polygons of the fixtures. Each polygon outline gets triangulated, and
+     * the triangles get merged to convex polygons when {@link Cfg.Ground#CONVEX_DECOMPOSITION}
+     * is enabled.
+     */
+    private static void computePolygons(Array<float[]> polygonOutlines, FloatArray outPolygons,
+                                        IntArray outVertexCounts) {
         for (float[] polygonOutline : polygonOutlines) {
-            ShortArray triangles = TRIANGULATOR.computeTriangles(polygonOutline);
+            ShortArray triangles = TRIANGULATOR.get().computeTriangles(polygonOutline);
+            ShortArray convexTriangles = tmpTriangles.get();
+            convexTriangles.clear();
             for (int i = 0; i < triangles.size; i += 3) {
                 int p1 = triangles.get(i) * 2;
                 int p2 = triangles.get(i + 1) * 2;
@@ -115,19 +563,51 @@ public class Fragment {
                     // which Box2D cannot handle, and that would not be visible anyways
                     continue;
                 }
-                shape.set(new float[]{ a1, a2, b1, b2, c1, c2 });
-                Fixture fixture = body.createFixture(fixtureDef);
-                fixture.setUserData(this);
+
+                if (Cfg.Ground.CONVEX_DECOMPOSITION) {
+                    convexTriangles.add(triangles.get(i), triangles.get(i + 1), triangles.get(i + 2));
+                } else {
+                    outPolygons.add(a1, a2, b1, b2);
+                    outPolygons.add(c1, c2);
+                    outVertexCounts.add(3);
+                }
+            }
+
+            if (convexTriangles.notEmpty()) {
+                ConvexDecompositionUtils.decompose(polygonOutline, convexTriangles,
+                        MAX_POLYGON_VERTICES, outPolygons, outVertexCounts);
             }
         }
-        shape.dispose();
-        return body;
     }
 
+    /**
+     * Gets the cache of the fixture polygons that is shared by all fragments, e.g. to inspect
+     * its hit rate.
+     */
+    public static FragmentGeometryCache getGeometryCache() {
+        return GEOMETRY_CACHE;
+    }
+
+    /**
+     * Gets the body the fixtures of this fragment are attached to, which might be shared with
+     * the other fragments of its chunk.
+     */
     public Body getBody() {
         return body;
     }
 
+    /**
+     * Gets the convex polygons to render in the form [x0, y0, x1, y1, ...] relative to the
+     * bottom left corner, which keep the full detail of the outlines.
+     */
+    public FloatArray getRenderPolygons() {
+        return renderPolygons;
+    }
+
+    public IntArray getRenderVertexCounts() {
+        return renderVertexCounts;
+    }
+
     public float getLeftX() {
         return bounds.x;
     }
@@ -140,8 +620,30 @@ public class Fragment {
         return bounds.width;
     }
 
+    /**
+     * Checks whether the fragment has no geometry left, neither to collide with nor to render.
+     */
     public boolean isEmpty() {
-        return body == null;
+        return !archived && !merged && body == null && renderVertexCounts.size == 0;
+    }
+
+    /**
+     * Checks whether the fragment has not been carved yet.
+     */
+    public boolean isSolid() {
+        return fragmentData.isTemplate();
+    }
+
+    public boolean isMerged() {
+        return merged;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public boolean isArchived() {
+        return archived;
     }
 
     public FragmentData getFragmentData() {
@@ -166,12 +668,14 @@ public class Fragment {
 
         @Override
         public Fragment read(Kryo kryo, Input input, Class<Fragment> type) {
-            return new Fragment(
-                    world,
-                    input.readFloat(),
-                    input.readFloat(),
-                    input.readFloat(),
-                    kryo.readObject(input, FragmentData.class));
+            float leftX = input.readFloat();
+            float bottomY = input.readFloat();
+            float size = input.readFloat();
+            FragmentData fragmentData = kryo.readObject(input, FragmentData.class);
+            if (fragmentData.isFull()) {
+                fragmentData = FragmentData.getSolidTemplate(fragmentData.getResolution(), fragmentData.getSize());
+            }
+            return new Fragment(world, leftX, bottomY, size, fragmentData);
         }
     }
 }
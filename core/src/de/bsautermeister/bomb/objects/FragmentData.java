@@ -1,103 +1,678 @@
 package de.bsautermeister.bomb.objects;
 
 import com.badlogic.gdx.math.Circle;
-import com.badlogic.gdx.math.GridPoint2;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.Pool;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 import de.bsautermeister.bomb.utils.ArrayUtils;
+import de.bsautermeister.bomb.utils.ClusterContext;
 import de.bsautermeister.bomb.utils.ClusterUtils;
-import de.bsautermeister.bomb.utils.result.ClusterResult;
+import de.bsautermeister.bomb.utils.MarchingSquaresUtils;
+
+import java.util.Arrays;
 
 public class FragmentData {
 
+    /**
+     * Each grid column is packed into a single word, which limits the supported resolution.
+     */
+    public static final int MAX_RESOLUTION = Long.SIZE;
+
+    public enum OutlineEngine {
+        /**
+         * Traces the outline of each cluster using {@link ClusterUtils}.
+         */
+        CLUSTER_TRACING,
+        /**
+         * Extracts all outlines in linear time using {@link MarchingSquaresUtils}. The outlines
+         * cover the same blocks of grid positions, but do not take the 22.5° shortcuts of the
+         * tracing, and leave out lines of grid positions without any area.
+         */
+        MARCHING_SQUARES
+    }
+
+    /**
+     * Engine selected on the main thread, which is read by the workers computing the geometry.
+     */
+    private static volatile OutlineEngine outlineEngine = OutlineEngine.CLUSTER_TRACING;
+
+    private static FragmentData solidTemplate;
+
     private final float size;
     private final float delta;
-    private final boolean[][] gridData;
+    private final int resolution;
+    private final long fullColumn;
+
+    /**
+     * Occupancy bits in shape [cols], where bit j of word i represents the grid position i,j.
+     */
+    private final long[] gridData;
+    private final boolean template;
+
+    /**
+     * Cached clusters of the last outline computation sorted by their start position, or null when
+     * the outlines have not been computed yet.
+     */
+    private Array<Cluster> clusters;
+    private OutlineEngine clustersEngine;
+    /**
+     * Outlines of the cached clusters, which is returned by each outline computation.
+     */
+    private Array<float[]> outlines;
+
+    /**
+     * Bounds of the grid positions that have been removed since the last outline computation. The
+     * region is clean when the min index is greater than the max index.
+     */
+    private int dirtyMinI = Integer.MAX_VALUE;
+    private int dirtyMaxI = Integer.MIN_VALUE;
+    private int dirtyMinJ = Integer.MAX_VALUE;
+    private int dirtyMaxJ = Integer.MIN_VALUE;
+
+    /**
+     * Bounds of the grid positions that have been removed since the last
+     * {@link #clearRemovedBounds()}, which is empty when the min index is greater than the max
+     * index. Unlike the dirty region, these are kept until the removal got published.
+     */
+    private int removedMinI = Integer.MAX_VALUE;
+    private int removedMaxI = Integer.MIN_VALUE;
+    private int removedMinJ = Integer.MAX_VALUE;
+    private int removedMaxJ = Integer.MIN_VALUE;
 
     public FragmentData(int resolution, float size) {
-        this(size, createInitialArray(resolution));
+        this(size, resolution, createInitialArray(resolution));
     }
 
-    private static boolean[][] createInitialArray(int resolution) {
-        boolean[][] data = new boolean[resolution][resolution];
-        ArrayUtils.fill2D(data, true);
+    private static long[] createInitialArray(int resolution) {
+        long[] data = new long[resolution];
+        ArrayUtils.fillBits(data, resolution);
         return data;
     }
 
     public FragmentData(float size, boolean[][] gridData) {
+        this(size, gridData.length, ArrayUtils.toBits(gridData));
         if (gridData.length > 0 && gridData[0].length > 0 && gridData.length != gridData[0].length) {
             throw new IllegalArgumentException("Grid data have square shape.");
         }
+    }
+
+    public FragmentData(float size, int resolution, long[] gridData) {
+        this(size, resolution, gridData, false);
+    }
+
+    private FragmentData(float size, int resolution, long[] gridData, boolean template) {
+        if (resolution > MAX_RESOLUTION) {
+            throw new IllegalArgumentException("Resolution must not exceed " + MAX_RESOLUTION + ".");
+        }
+        if (gridData.length != resolution) {
+            throw new IllegalArgumentException("Grid data have square shape.");
+        }
 
         this.size = size;
-        this.delta = this.size / (gridData.length - 1);
+        this.delta = this.size / (resolution - 1);
+        this.resolution = resolution;
+        this.fullColumn = ArrayUtils.lowBits(resolution);
         this.gridData = gridData; // not needed here to copy the array
+        this.template = template;
+    }
+
+    /**
+     * Gets the solid data that is shared by all untouched fragments. The template must not be
+     * modified, so that a fragment has to {@link #copy()} it on its first carve.
+     */
+    public static FragmentData getSolidTemplate(int resolution, float size) {
+        FragmentData result = solidTemplate;
+        if (result == null || result.resolution != resolution || result.size != size) {
+            result = new FragmentData(size, resolution, createInitialArray(resolution), true);
+            solidTemplate = result;
+        }
+        return result;
+    }
+
+    /**
+     * Creates modifiable data with the same grid contents.
+     */
+    public FragmentData copy() {
+        return new FragmentData(size, resolution, gridData.clone());
+    }
+
+    public boolean isTemplate() {
+        return template;
+    }
+
+    /**
+     * Creates data of a lower resolution, where each coarse grid position is set when any grid
+     * position of its block is set. Point sampling every n-th grid position instead would cut
+     * thin walls into one-cell necks and holes. The blocks of the border positions only span the
+     * border, so that neighboring data still match there. The resolution of this data minus one
+     * has to be a multiple of the given resolution minus one.
+     */
+    public FragmentData downsample(int coarseResolution) {
+        int step = coarseResolution > 1 ? (resolution - 1) / (coarseResolution - 1) : 0;
+        if (step == 0 || step * (coarseResolution - 1) != resolution - 1) {
+            throw new IllegalArgumentException("Resolution " + coarseResolution
+                    + " does not evenly sample resolution " + resolution + ".");
+        }
+
+        long[] coarseData = new long[coarseResolution];
+        for (int i = 0; i < coarseResolution; ++i) {
+            long column = 0L;
+            for (int k = getBlockStart(i, step, coarseResolution); k <= getBlockEnd(i, step, coarseResolution); ++k) {
+                column |= gridData[k];
+            }
+            long coarseColumn = 0L;
+            for (int j = 0; j < coarseResolution; ++j) {
+                int start = getBlockStart(j, step, coarseResolution);
+                int end = getBlockEnd(j, step, coarseResolution);
+                if ((column & (ArrayUtils.lowBits(end + 1) & ~ArrayUtils.lowBits(start))) != 0) {
+                    coarseColumn |= 1L << j;
+                }
+            }
+            coarseData[i] = coarseColumn;
+        }
+        return new FragmentData(size, coarseResolution, coarseData);
+    }
+
+    private static int getBlockStart(int coarseIdx, int step, int coarseResolution) {
+        if (coarseIdx == 0 || coarseIdx == coarseResolution - 1) {
+            return coarseIdx * step;
+        }
+        return coarseIdx == 1 ? 1 : coarseIdx * step - step / 2;
+    }
+
+    private static int getBlockEnd(int coarseIdx, int step, int coarseResolution) {
+        int last = coarseResolution - 1;
+        if (coarseIdx == 0 || coarseIdx == last) {
+            return coarseIdx * step;
+        }
+        return coarseIdx == last - 1 ? last * step - 1 : coarseIdx * step + step / 2;
+    }
+
+    private void checkModifiable() {
+        if (template) {
+            throw new IllegalStateException("Shared template data must not be modified.");
+        }
+    }
+
+    /**
+     * Checks whether removing the circle would remove any grid position, without modifying the
+     * data, so that it can be used on the template as well.
+     */
+    public boolean wouldRemove(Circle circle) {
+        for (int i = 0; i < resolution; ++i) {
+            if ((gridData[i] & computeSpanMask(circle, i)) != 0L) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public boolean remove(Circle circle) {
+        checkModifiable();
         boolean updated = false;
-        for (int i = 0; i < gridData.length; ++i) {
-            for (int j = 0; j < gridData[i].length; ++j) {
-                float x = getRelativeX(i);
-                float y = getRelativeY(j);
-                if (gridData[i][j] && circle.contains(x, y)) {
-                    gridData[i][j] = false;
-                    updated = true;
-                }
+        for (int i = 0; i < resolution; ++i) {
+            long removed = gridData[i] & computeSpanMask(circle, i);
+            if (removed != 0L) {
+                gridData[i] &= ~removed;
+                markDirty(i, removed);
+                updated = true;
             }
         }
         return updated;
     }
 
+    /**
+     * Removes the grid positions of column i that are set in the mask, which keeps the cached
+     * outlines of the clusters that are not connected to them like any other removal.
+     */
+    public boolean removeFromColumn(int i, long mask) {
+        checkModifiable();
+        long removed = gridData[i] & mask;
+        if (removed == 0L) {
+            return false;
+        }
+        gridData[i] &= ~removed;
+        markDirty(i, removed);
+        return true;
+    }
+
     public int removeWithPositions(float[] outRemovedVertices, int offset, float leftX, float bottomY, Circle circle) {
+        checkModifiable();
         int count = 0;
-        for (int i = 0; i < gridData.length; ++i) {
-            for (int j = 0; j < gridData[i].length; ++j) {
-                float x = getRelativeX(i);
-                float y = getRelativeY(j);
-                if (gridData[i][j] && circle.contains(x, y)) {
-                    gridData[i][j] = false;
-                    outRemovedVertices[offset + 2 * count] = leftX + x;
-                    outRemovedVertices[offset + 2 * count + 1] = bottomY + y;
-                    count++;
-                }
+        for (int i = 0; i < resolution; ++i) {
+            long removed = gridData[i] & computeSpanMask(circle, i);
+            if (removed == 0L) {
+                continue;
+            }
+            gridData[i] &= ~removed;
+            markDirty(i, removed);
+
+            float x = getRelativeX(i);
+            while (removed != 0L) {
+                int j = Long.numberOfTrailingZeros(removed);
+                removed &= removed - 1;
+                outRemovedVertices[offset + 2 * count] = leftX + x;
+                outRemovedVertices[offset + 2 * count + 1] = bottomY + getRelativeY(j);
+                count++;
             }
         }
         return count;
     }
 
+    /**
+     * Computes the bits of column i that are covered by the circle. Instead of testing each grid
+     * position, the span is estimated analytically and its ends are corrected using
+     * {@link Circle#contains(float, float)}, so that the result is identical to a per-position test.
+     */
+    private long computeSpanMask(Circle circle, int i) {
+        float x = getRelativeX(i);
+        float dx = circle.x - x;
+        float radius2 = circle.radius * circle.radius;
+        if (dx * dx > radius2) {
+            return 0L;
+        }
+
+        // the closest grid position of that column must be covered, otherwise there is no span
+        int center = clampIndex(Math.round(circle.y / delta));
+        if (!circle.contains(x, getRelativeY(center))) {
+            if (center > 0 && circle.contains(x, getRelativeY(center - 1))) {
+                center--;
+            } else if (center < resolution - 1 && circle.contains(x, getRelativeY(center + 1))) {
+                center++;
+            } else {
+                return 0L;
+            }
+        }
+
+        float halfSpan = (float) Math.sqrt(radius2 - dx * dx);
+        int min = Math.min(center, clampIndex((int) Math.ceil((circle.y - halfSpan) / delta)));
+        while (min > 0 && circle.contains(x, getRelativeY(min - 1))) {
+            min--;
+        }
+        while (!circle.contains(x, getRelativeY(min))) {
+            min++;
+        }
+
+        int max = Math.max(center, clampIndex((int) Math.floor((circle.y + halfSpan) / delta)));
+        while (max < resolution - 1 && circle.contains(x, getRelativeY(max + 1))) {
+            max++;
+        }
+        while (!circle.contains(x, getRelativeY(max))) {
+            max--;
+        }
+
+        return ArrayUtils.lowBits(max + 1) & ~ArrayUtils.lowBits(min);
+    }
+
+    private int clampIndex(int index) {
+        return Math.max(0, Math.min(resolution - 1, index));
+    }
+
+    private void markDirty(int i, long removed) {
+        int minJ = Long.numberOfTrailingZeros(removed);
+        int maxJ = Long.SIZE - 1 - Long.numberOfLeadingZeros(removed);
+        dirtyMinI = Math.min(dirtyMinI, i);
+        dirtyMaxI = Math.max(dirtyMaxI, i);
+        dirtyMinJ = Math.min(dirtyMinJ, minJ);
+        dirtyMaxJ = Math.max(dirtyMaxJ, maxJ);
+        removedMinI = Math.min(removedMinI, i);
+        removedMaxI = Math.max(removedMaxI, i);
+        removedMinJ = Math.min(removedMinJ, minJ);
+        removedMaxJ = Math.max(removedMaxJ, maxJ);
+    }
+
+    public boolean hasRemovedBounds() {
+        return removedMinI <= removedMaxI;
+    }
+
+    public int getRemovedMinI() {
+        return removedMinI;
+    }
+
+    public int getRemovedMaxI() {
+        return removedMaxI;
+    }
+
+    public int getRemovedMinJ() {
+        return removedMinJ;
+    }
+
+    public int getRemovedMaxJ() {
+        return removedMaxJ;
+    }
+
+    /**
+     * Resets the bounds of the removed grid positions, after the removal got published.
+     */
+    public void clearRemovedBounds() {
+        removedMinI = Integer.MAX_VALUE;
+        removedMaxI = Integer.MIN_VALUE;
+        removedMinJ = Integer.MAX_VALUE;
+        removedMaxJ = Integer.MIN_VALUE;
+    }
+
+    private boolean isDirty() {
+        return dirtyMinI <= dirtyMaxI;
+    }
+
+    private void clearDirty() {
+        dirtyMinI = Integer.MAX_VALUE;
+        dirtyMaxI = Integer.MIN_VALUE;
+        dirtyMinJ = Integer.MAX_VALUE;
+        dirtyMaxJ = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Temporaries are thread-local, so that the outlines of different fragments can be computed
+     * in parallel.
+     */
+    private static final ThreadLocal<long[]> tmpAffected = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[MAX_RESOLUTION];
+        }
+    };
+    private static final ThreadLocal<ClusterContext> tmpClusterContext = new ThreadLocal<ClusterContext>() {
+        @Override
+        protected ClusterContext initialValue() {
+            return new ClusterContext();
+        }
+    };
+    private static final ThreadLocal<IntArray> tmpOutlinePoints = new ThreadLocal<IntArray>() {
+        @Override
+        protected IntArray initialValue() {
+            return new IntArray();
+        }
+    };
+    private static final ThreadLocal<IntArray> tmpOutlineSizes = new ThreadLocal<IntArray>() {
+        @Override
+        protected IntArray initialValue() {
+            return new IntArray();
+        }
+    };
+    private static final ThreadLocal<Pool<Cluster>> tmpClusterPool = new ThreadLocal<Pool<Cluster>>() {
+        @Override
+        protected Pool<Cluster> initialValue() {
+            return new Pool<Cluster>(16, 256) {
+                @Override
+                protected Cluster newObject() {
+                    return new Cluster();
+                }
+            };
+        }
+    };
     /**
      * Computes the outlines clock-wise, which can result either convex or concave polygons.
+     * <p>
+     * Only the clusters that are connected to the grid positions removed since the last call are
+     * recomputed, while the outlines of all other clusters are reused. This results in the same
+     * outlines as a full computation, because the clustering of a grid position only depends on
+     * the grid positions it is connected with.
+     * <p>
+     * The returned array and the arrays of recomputed clusters are reused, so that the returned
+     * outlines are only valid until the next outline computation of this fragment data.
      */
     public Array<float[]> computeOutlines() {
-        ClusterResult clusterResult = ClusterUtils.computeClusters(gridData);
+        return computeOutlines(outlineEngine);
+    }
 
-        Array<float[]> result = new Array<>();
-        for (int clusterIdx = 0; clusterIdx < clusterResult.getCount(); ++clusterIdx) {
-            GridPoint2 startPosition = clusterResult.getStartPosition(clusterIdx);
-            int[][] clusterData = clusterResult.getData();
+    /**
+     * Computes the outlines using the given engine, so that a caller can use the same engine for
+     * the outlines as for its caches while the selected engine changes concurrently.
+     */
+    public Array<float[]> computeOutlines(OutlineEngine engine) {
+        if (clustersEngine != engine) {
+            releaseOutlines();
+            clustersEngine = engine;
+        }
 
-            Array<GridPoint2> gridPoints = ClusterUtils.computeClusterOutline(clusterData, clusterIdx, startPosition);
-            result.add(toPolygonArray(gridPoints));
+        if (engine == OutlineEngine.MARCHING_SQUARES) {
+            if (clusters == null || isDirty()) {
+                updateMarchingSquaresOutlines();
+            }
+        } else if (clusters == null) {
+            long[] affected = tmpAffected.get();
+            clusters = new Array<>();
+            System.arraycopy(gridData, 0, affected, 0, resolution);
+            updateClusters(affected);
+        } else if (isDirty()) {
+            long[] affected = tmpAffected.get();
+            computeAffected(affected);
+            removeAffectedClusters(affected);
+            updateClusters(affected);
         }
+        clearDirty();
 
-        return result;
+        if (outlines == null) {
+            outlines = new Array<>(clusters.size);
+        }
+        outlines.clear();
+        for (Cluster cluster : clusters) {
+            outlines.add(cluster.outline);
+        }
+        return outlines;
+    }
+
+    private void updateMarchingSquaresOutlines() {
+        ClusterContext context = tmpClusterContext.get();
+        Pool<Cluster> clusterPool = tmpClusterPool.get();
+        if (clusters == null) {
+            clusters = new Array<>();
+        }
+        for (Cluster cluster : clusters) {
+            releaseCluster(cluster, context, clusterPool);
+        }
+        clusters.clear();
+        IntArray points = tmpOutlinePoints.get();
+        IntArray sizes = tmpOutlineSizes.get();
+        points.clear();
+        sizes.clear();
+        MarchingSquaresUtils.computeOutlines(gridData, resolution, points, sizes);
+        int offset = 0;
+        for (int k = 0; k < sizes.size; ++k) {
+            int size = sizes.get(k);
+            float[] polygonData = context.obtainOutline(size);
+            for (int p = 0; p < size; p += 2) {
+                polygonData[p] = getRelativeX(points.get(offset + p));
+                polygonData[p + 1] = getRelativeY(points.get(offset + p + 1));
+            }
+            // the cells of each outline are not needed, because all outlines are recomputed
+            int start = points.get(offset) * resolution + points.get(offset + 1);
+            clusters.add(clusterPool.obtain().set(start, null, polygonData));
+            offset += size;
+        }
+    }
+
+    /**
+     * Computes all defined grid positions that are connected to the dirty region, by growing the
+     * defined grid positions around the dirty region until they cover their connected components.
+     */
+    private void computeAffected(long[] outAffected) {
+        int minI = Math.max(0, dirtyMinI - 1);
+        int maxI = Math.min(resolution - 1, dirtyMaxI + 1);
+        long seedMask = ArrayUtils.lowBits(Math.min(resolution, dirtyMaxJ + 2)) & ~ArrayUtils.lowBits(Math.max(0, dirtyMinJ - 1));
+        for (int i = 0; i < resolution; ++i) {
+            outAffected[i] = i >= minI && i <= maxI ? gridData[i] & seedMask : 0L;
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < resolution; ++i) {
+                long neighbors = outAffected[i];
+                if (i > 0) neighbors |= outAffected[i - 1];
+                if (i < resolution - 1) neighbors |= outAffected[i + 1];
+                long grown = (neighbors | (neighbors << 1) | (neighbors >>> 1)) & gridData[i];
+                if (grown != outAffected[i]) {
+                    outAffected[i] = grown;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private void removeAffectedClusters(long[] affected) {
+        ClusterContext context = tmpClusterContext.get();
+        Pool<Cluster> clusterPool = tmpClusterPool.get();
+        for (int c = clusters.size - 1; c >= 0; --c) {
+            long[] cells = clusters.get(c).cells;
+            for (int i = 0; i < resolution; ++i) {
+                if ((cells[i] & affected[i]) != 0L || (cells[i] & ~gridData[i]) != 0L) {
+                    releaseCluster(clusters.removeIndex(c), context, clusterPool);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the cached outlines, so that their arrays can be reused by the outline computations
+     * of other fragment data on the same thread. This is meant for temporary fragment data, such as
+     * downsampled grids, once their outlines have been used.
+     */
+    public void releaseOutlines() {
+        if (clusters == null) {
+            return;
+        }
+        ClusterContext context = tmpClusterContext.get();
+        Pool<Cluster> clusterPool = tmpClusterPool.get();
+        for (Cluster cluster : clusters) {
+            releaseCluster(cluster, context, clusterPool);
+        }
+        clusters = null;
+        // the released arrays must not be reachable through the last result anymore
+        outlines.clear();
     }
 
-    private float[] toPolygonArray(Array<GridPoint2> gridPoints) {
-        float[] polygonData = new float[gridPoints.size * 2];
-        int i = 0;
-        for (GridPoint2 gridPoint : gridPoints) {
-            polygonData[i++] = getRelativeX(gridPoint.x);
-            polygonData[i++] = getRelativeY(gridPoint.y);
+    private static void releaseCluster(Cluster cluster, ClusterContext context, Pool<Cluster> clusterPool) {
+        if (cluster.cells != null) {
+            context.freeCells(cluster.cells);
+        }
+        context.freeOutline(cluster.outline);
+        clusterPool.free(cluster);
+    }
+
+    /**
+     * Clusters the affected grid positions and traces their outlines.
+     */
+    private void updateClusters(long[] affected) {
+        ClusterContext context = tmpClusterContext.get();
+        IntArray outlinePoints = tmpOutlinePoints.get();
+        Pool<Cluster> clusterPool = tmpClusterPool.get();
+        context.load(affected, resolution);
+        ClusterUtils.computeClusters(context);
+        for (int clusterIdx = 0; clusterIdx < context.getCount(); ++clusterIdx) {
+            int startI = context.getStartI(clusterIdx);
+            int startJ = context.getStartJ(clusterIdx);
+            outlinePoints.clear();
+            ClusterUtils.computeClusterOutline(context, clusterIdx, startI, startJ, outlinePoints);
+
+            long[] cells = context.obtainCells(resolution);
+            for (int i = 0; i < resolution; ++i) {
+                for (int j = 0; j < resolution; ++j) {
+                    if (context.getLabel(i, j) == clusterIdx) {
+                        cells[i] |= 1L << j;
+                    }
+                }
+            }
+            float[] outline = toPolygonArray(outlinePoints, context.obtainOutline(outlinePoints.size));
+            insertSorted(clusterPool.obtain().set(startI * resolution + startJ, cells, outline));
+        }
+    }
+
+    private void insertSorted(Cluster cluster) {
+        int index = clusters.size;
+        while (index > 0 && clusters.get(index - 1).startIndex > cluster.startIndex) {
+            index--;
+        }
+        clusters.insert(index, cluster);
+    }
+
+    private float[] toPolygonArray(IntArray gridPoints, float[] polygonData) {
+        for (int k = 0; k < gridPoints.size; k += 2) {
+            polygonData[k] = getRelativeX(gridPoints.get(k));
+            polygonData[k + 1] = getRelativeY(gridPoints.get(k + 1));
         }
         return polygonData;
     }
 
+    public boolean isSet(int i, int j) {
+        return (gridData[i] & (1L << j)) != 0;
+    }
+
+    /**
+     * Gets the packed grid column i, where bit j represents the grid position i,j.
+     */
+    public long getColumn(int i) {
+        return gridData[i];
+    }
+
+    /**
+     * Computes a hash of the grid contents, which is equal for fragments in the same state.
+     */
+    public int contentHashCode() {
+        return Arrays.hashCode(gridData);
+    }
+
+    /**
+     * Checks whether the grid contents are equal to the given packed grid columns.
+     */
+    public boolean contentEquals(long[] columns) {
+        return Arrays.equals(gridData, columns);
+    }
+
+    /**
+     * Copies the packed grid columns into a new array.
+     */
+    public long[] copyColumns() {
+        return gridData.clone();
+    }
+
+    /**
+     * Counts the defined grid positions.
+     */
+    public int popCount() {
+        int count = 0;
+        for (long column : gridData) {
+            count += Long.bitCount(column);
+        }
+        return count;
+    }
+
+    public boolean isFull() {
+        for (long column : gridData) {
+            if (column != fullColumn) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isEmpty() {
+        for (long column : gridData) {
+            if (column != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Selects the engine used by all fragments to compute their outlines.
+     */
+    public static void setOutlineEngine(OutlineEngine engine) {
+        outlineEngine = engine;
+    }
+
+    public static OutlineEngine getOutlineEngine() {
+        return outlineEngine;
+    }
+
     public float getSize() {
         return size;
     }
@@ -110,8 +685,12 @@ public class FragmentData {
         return j * delta;
     }
 
+    /**
+     * Unpacks the grid data into a new array in shape [cols, rows]. Changes to the returned
+     * array are not reflected in this fragment.
+     */
     public boolean[][] getGridData() {
-        return gridData;
+        return ArrayUtils.fromBits(gridData, resolution);
     }
 
     public float getDelta() {
@@ -119,33 +698,59 @@ public class FragmentData {
     }
 
     public int getResolution() {
-        return gridData.length;
+        return resolution;
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
-        for (boolean[] gridDatum : gridData) {
-            for (int j = 0; j < gridData[0].length; ++j) {
-                sb.append(gridDatum[j] ? 'X' : '-');
+        for (int i = 0; i < resolution; ++i) {
+            for (int j = 0; j < resolution; ++j) {
+                sb.append(isSet(i, j) ? 'X' : '-');
             }
             sb.append('\n');
         }
         return sb.toString();
     }
 
+    private static class Cluster implements Pool.Poolable {
+        /**
+         * Index of the start position in scan order, which defines the order of the clusters.
+         */
+        int startIndex;
+        long[] cells;
+        float[] outline;
+
+        Cluster set(int startIndex, long[] cells, float[] outline) {
+            this.startIndex = startIndex;
+            this.cells = cells;
+            this.outline = outline;
+            return this;
+        }
+
+        @Override
+        public void reset() {
+            cells = null;
+            outline = null;
+        }
+    }
+
     public static class KryoSerializer extends Serializer<FragmentData> {
         @Override
         public void write(Kryo kryo, Output output, FragmentData object) {
             output.writeFloat(object.getSize());
-            kryo.writeObject(output, object.getGridData());
+            output.writeInt(object.getResolution(), true);
+            output.writeLongs(object.gridData);
         }
 
         @Override
         public FragmentData read(Kryo kryo, Input input, Class<FragmentData> type) {
+            float size = input.readFloat();
+            int resolution = input.readInt(true);
             return new FragmentData(
-                    input.readFloat(),
-                    kryo.readObject(input, boolean[][].class));
+                    size,
+                    resolution,
+                    input.readLongs(resolution));
         }
     }
 }
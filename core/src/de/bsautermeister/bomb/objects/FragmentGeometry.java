@@ -0,0 +1,51 @@
+package de.bsautermeister.bomb.objects;
+
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Geometry of a fragment, which consists of the polygons of its collision fixtures and the convex
+ * polygons that get rendered. The collision polygons are computed from simplified outlines, and
+ * are either convex polygons or chain loops depending on the collider type. The render polygons
+ * keep the full detail.
+ */
+public class FragmentGeometry {
+
+    private Fragment.ColliderType colliderType = Fragment.ColliderType.POLYGONS;
+
+    private final FloatArray collisionPolygons = new FloatArray();
+    private final IntArray collisionVertexCounts = new IntArray();
+    private final FloatArray renderPolygons = new FloatArray();
+    private final IntArray renderVertexCounts = new IntArray();
+
+    public void clear() {
+        collisionPolygons.clear();
+        collisionVertexCounts.clear();
+        renderPolygons.clear();
+        renderVertexCounts.clear();
+    }
+
+    public Fragment.ColliderType getColliderType() {
+        return colliderType;
+    }
+
+    public void setColliderType(Fragment.ColliderType colliderType) {
+        this.colliderType = colliderType;
+    }
+
+    public FloatArray getCollisionPolygons() {
+        return collisionPolygons;
+    }
+
+    public IntArray getCollisionVertexCounts() {
+        return collisionVertexCounts;
+    }
+
+    public FloatArray getRenderPolygons() {
+        return renderPolygons;
+    }
+
+    public IntArray getRenderVertexCounts() {
+        return renderVertexCounts;
+    }
+}
@@ -0,0 +1,192 @@
+package de.bsautermeister.bomb.objects;
+
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the fixture polygons of fragments, keyed by the contents of their grid.
+ * Fragments in identical states, such as untouched ones or ones carved by the same impact at the
+ * same relative position, can reuse the polygons without outline computation and triangulation.
+ * The cache is thread-safe, so that it can be used while computing the geometry in parallel.
+ */
+public class FragmentGeometryCache {
+
+    private final Map<Key, Entry> entries;
+
+    /**
+     * Key used for lookups, which refers to the live grid data to avoid copying it.
+     */
+    private final LookupKey lookupKey = new LookupKey();
+
+    /**
+     * Key and entry of the last evicted polygons, which are reused by the next put.
+     */
+    private Key spareKey;
+    private Entry spareEntry;
+
+    private int hits;
+    private int misses;
+
+    public FragmentGeometryCache(final int capacity) {
+        entries = new LinkedHashMap<Key, Entry>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > capacity) {
+                    spareKey = eldest.getKey();
+                    spareEntry = eldest.getValue();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the cached polygons of the fragment data and adds them to the output. Returns false
+     * when there are no cached polygons.
+     */
+    public synchronized boolean get(FragmentData fragmentData, Object variant, FloatArray outPolygons, IntArray outVertexCounts) {
+        lookupKey.set(fragmentData, variant);
+        Entry entry = entries.get(lookupKey);
+        lookupKey.set(null, null);
+        if (entry == null) {
+            misses++;
+            return false;
+        }
+
+        hits++;
+        outPolygons.addAll(entry.polygons);
+        outVertexCounts.addAll(entry.vertexCounts);
+        return true;
+    }
+
+    public synchronized void put(FragmentData fragmentData, Object variant, FloatArray polygons, IntArray vertexCounts) {
+        Key key = spareKey != null ? spareKey : new Key();
+        Entry entry = spareEntry != null ? spareEntry : new Entry();
+        spareKey = null;
+        spareEntry = null;
+        key.set(fragmentData, variant);
+        entry.set(polygons, vertexCounts);
+        Entry replaced = entries.put(key, entry);
+        if (replaced != null) {
+            // the polygons got computed concurrently, in which case the map keeps its key
+            spareEntry = replaced;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        spareKey = null;
+        spareEntry = null;
+        hits = 0;
+        misses = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    private static class Entry {
+        final FloatArray polygons = new FloatArray();
+        final IntArray vertexCounts = new IntArray();
+
+        void set(FloatArray polygons, IntArray vertexCounts) {
+            this.polygons.clear();
+            this.polygons.addAll(polygons);
+            this.vertexCounts.clear();
+            this.vertexCounts.addAll(vertexCounts);
+        }
+    }
+
+    /**
+     * Key that holds a copy of the grid columns. The variant distinguishes polygons that are
+     * computed differently from the same grid contents.
+     */
+    private static class Key {
+        long[] columns;
+        float size;
+        Object variant;
+        int hash;
+
+        /**
+         * Sets the contents, which must only be done while the key is not part of the map.
+         */
+        void set(FragmentData fragmentData, Object variant) {
+            int resolution = fragmentData.getResolution();
+            if (columns == null || columns.length != resolution) {
+                columns = new long[resolution];
+            }
+            for (int i = 0; i < resolution; ++i) {
+                columns[i] = fragmentData.getColumn(i);
+            }
+            this.size = fragmentData.getSize();
+            this.variant = variant;
+            this.hash = hash(fragmentData.contentHashCode(), size, variant);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof LookupKey) {
+                return obj.equals(this);
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && size == other.size && variant == other.variant
+                    && Arrays.equals(columns, other.columns);
+        }
+    }
+
+    private static class LookupKey {
+        FragmentData fragmentData;
+        Object variant;
+        int hash;
+
+        void set(FragmentData fragmentData, Object variant) {
+            this.fragmentData = fragmentData;
+            this.variant = variant;
+            this.hash = fragmentData != null
+                    ? hash(fragmentData.contentHashCode(), fragmentData.getSize(), variant) : 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && fragmentData.getSize() == other.size
+                    && variant == other.variant && fragmentData.contentEquals(other.columns);
+        }
+    }
+
+    private static int hash(int contentHash, float size, Object variant) {
+        int result = contentHash;
+        result = 31 * result + Float.floatToIntBits(size);
+        result = 31 * result + (variant != null ? variant.hashCode() : 0);
+        return result;
+    }
+}
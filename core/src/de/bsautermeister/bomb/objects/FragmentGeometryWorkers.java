@@ -0,0 +1,100 @@
+package de.bsautermeister.bomb.objects;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Computes the geometry of multiple fragments in parallel on a fixed pool of worker threads,
+ * which is shared by all instances. Only the computation runs on the workers, while the results
+ * have to be committed to the physics world by the caller on the main thread.
+ */
+public class FragmentGeometryWorkers {
+
+    private static final int NUM_WORKERS = Runtime.getRuntime().availableProcessors() - 1;
+
+    private static ExecutorService executor;
+
+    private final Array<FragmentGeometry> geometries = new Array<>();
+    private final List<Callable<Void>> tasks = new ArrayList<>();
+
+    /**
+     * Checks whether there is more than a single core, which makes parallel computation worth it.
+     */
+    public static boolean isAvailable() {
+        return NUM_WORKERS > 0;
+    }
+
+    /**
+     * Computes the geometry of the given fragments and blocks until all of them are done. The
+     * results can be accessed by the index of the fragment afterwards.
+     */
+    public void compute(Array<Fragment> fragments) {
+        while (geometries.size < fragments.size) {
+            geometries.add(new FragmentGeometry());
+        }
+
+        tasks.clear();
+        for (int k = 0; k < fragments.size; ++k) {
+            tasks.add(new GeometryTask(fragments.get(k), geometries.get(k)));
+        }
+
+        try {
+            for (Future<Void> future : getExecutor().invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GdxRuntimeException("Interrupted while computing fragment geometry", e);
+        } catch (ExecutionException e) {
+            throw new GdxRuntimeException("Failed to compute fragment geometry", e.getCause());
+        } finally {
+            tasks.clear();
+        }
+    }
+
+    public FragmentGeometry getGeometry(int index) {
+        return geometries.get(index);
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(NUM_WORKERS, new ThreadFactory() {
+                private int count;
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "fragment-geometry-" + count++);
+                    // do not keep the application alive
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    private static class GeometryTask implements Callable<Void> {
+        private final Fragment fragment;
+        private final FragmentGeometry outGeometry;
+
+        GeometryTask(Fragment fragment, FragmentGeometry outGeometry) {
+            this.fragment = fragment;
+            this.outGeometry = outGeometry;
+        }
+
+        @Override
+        public Void call() {
+            fragment.computeGeometry(outGeometry);
+            return null;
+        }
+    }
+}
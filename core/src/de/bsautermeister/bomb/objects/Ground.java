@@ -1,24 +1,145 @@
 package de.bsautermeister.bomb.objects;
 
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.World;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.BooleanArray;
+import com.badlogic.gdx.utils.IntArray;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import de.bsautermeister.bomb.Cfg;
+
 public class Ground {
 
+    private static final int MAX_EVICTIONS_PER_UPDATE = 1;
+    private static final int MAX_COARSENINGS_PER_UPDATE = 1;
+
+    /**
+     * Surface of a grid column that does not have any solid grid position.
+     */
+    private static final int NO_SURFACE = Integer.MAX_VALUE;
+    /**
+     * Tolerance in grid positions when converting world coordinates to grid positions, so that
+     * coordinates that are on a grid position up to rounding errors map to it.
+     */
+    private static final float GRID_EPSILON = 1e-3f;
+
     private final World world;
 
     /**
-     * All fragments in shape [row, cols].
+     * All fragments in shape [row, cols]. The column index of each fragment is stable, which is
+     * why fragments that got completely removed are kept as null.
      */
     private final Array<Array<Fragment>> fragments;
 
+    /**
+     * Frame until which each row is kept alive. Rows that are not kept alive any longer get
+     * evicted, which destroys the physics bodies of their fragments while retaining their data.
+     */
+    private final IntArray rowKeepAliveFrames;
+    private final BooleanArray rowEvicted;
+    /**
+     * Rows that are not evicted, which are the only candidates for eviction, so that the update
+     * does not scan all rows down to the deepest one each frame.
+     */
+    private final IntArray liveRows = new IntArray();
+    /**
+     * Storage outside of the Java heap of the grid data of evicted rows, whose fragments are
+     * dropped until the row gets restored. It is null when the fragments of evicted rows are
+     * retained, see {@link Cfg.Ground#SPILL_EVICTED_ROWS}.
+     */
+    private final GroundStore store;
+
+    /**
+     * Frame until which each row keeps the full collision geometry. Rows outside of the detail
+     * range afterwards switch to coarse collision geometry, until they get in range again.
+     */
+    private final IntArray rowDetailFrames;
+    private final BooleanArray rowCoarse;
+    /**
+     * Rows that use their full collision geometry, which are the only candidates for coarsening.
+     */
+    private final IntArray detailedRows = new IntArray();
+    private int frame;
+
     private int lowestRowImpacted;
 
+    /**
+     * Number of rows that have been requested ahead of the player, which get added gradually.
+     */
+    private int requestedRows;
+
+    /**
+     * Regions of solid fragments that are covered by a single box body each, instead of a body
+     * per fragment. Regions get split when an impact reaches them.
+     */
+    private final Array<SolidRegion> solidRegions = new Array<>();
+    /**
+     * Regions in the form [minRow, maxRow, minCol, maxCol, ...] while merging.
+     */
+    private final IntArray tmpMergedRegions = new IntArray();
+    private final IntArray tmpRemovedRegions = new IntArray();
+    private final Array<SolidRegion> tmpCandidateRegions = new Array<>();
+    /**
+     * Rows that got impacted since the last merge of the solid regions, which is the only range
+     * the merge has to look at. The range is empty when the min row is greater than the max row.
+     */
+    private int mergeMinRow = Integer.MAX_VALUE;
+    private int mergeMaxRow = -1;
+
+    /**
+     * Chunks of {@link Cfg.Ground#BODY_CHUNK_SIZE} rows and columns in shape [chunkRow, chunkCols],
+     * whose fragments share a single body instead of a body per fragment.
+     */
+    private final Array<GroundChunk[]> chunks = new Array<>();
+    /**
+     * Whether the chunks compute the collision geometry across the fragment borders, see
+     * {@link Cfg.Ground#SEAMLESS_CHUNKS}.
+     */
+    private final boolean seamlessChunks = Cfg.Ground.SEAMLESS_CHUNKS
+            && GroundChunk.getSeamlessResolution(Cfg.Ground.BODY_CHUNK_SIZE, Cfg.Ground.FRAGMENT_RESOLUTION)
+            <= FragmentData.MAX_RESOLUTION;
+    private final Array<GroundChunk> dirtyChunks = new Array<>();
+
+    /**
+     * Slots in the form row * numCols + col of the fragments that got carved since the last
+     * flush. Their bodies get rebuilt only once per flush, no matter how many impacts hit them.
+     */
+    private final IntArray dirtySlots = new IntArray(64);
+    private final Array<Fragment> tmpRebuildFragments = new Array<>(64);
+    private final FragmentGeometryWorkers geometryWorkers = new FragmentGeometryWorkers();
+    private int frameCarves;
+    private int frameDetailChanges;
+    private int frameRebuilds;
+    private int frameChunkRebuilds;
+
+    /**
+     * Index of the topmost solid grid position of each grid column of the whole ground, which is
+     * counted in grid positions from the top of the ground. The border grid positions that are
+     * shared by neighboring fragments are counted once. The surface of the columns below an
+     * impact gets updated on the next flush, by only scanning down from its previous surface.
+     */
+    private final int[] surfaceCells;
+    private int dirtySurfaceMinCell = Integer.MAX_VALUE;
+    private int dirtySurfaceMaxCell = Integer.MIN_VALUE;
+    private final int cellsPerFragment = Cfg.Ground.FRAGMENT_RESOLUTION - 1;
+    private final float cellSize;
+
+    /**
+     * Listeners of the changes of the ground, and the version of the ground that increases with
+     * each published change.
+     */
+    private final Array<GroundListener> listeners = new Array<>(4);
+    private long version;
+
     private final float size;
     private final int numCols;
     private final int numCompleteRows;
@@ -29,9 +150,15 @@ public class Ground {
         this.numCols = numCols;
         this.numCompleteRows = numCompleteRows;
         this.fragments = new Array<>(1024);
-        for (int r = 0; r < numCompleteRows; ++r) {
-            fragments.add(createRow(world, numCols, r, size));
-        }
+        this.rowKeepAliveFrames = new IntArray(1024);
+        this.rowEvicted = new BooleanArray(1024);
+        this.rowDetailFrames = new IntArray(1024);
+        this.rowCoarse = new BooleanArray(1024);
+        this.store = createStore(numCols);
+        this.cellSize = size / cellsPerFragment;
+        this.surfaceCells = createSurface(numCols);
+        addSolidRows(numCompleteRows);
+        rebuildChunks();
     }
 
     public Ground(World world, int numCols, int numCompleteRows, float size,
@@ -40,20 +167,113 @@ public class Ground {
         this.size = size;
         this.numCols = numCols;
         this.numCompleteRows = numCompleteRows;
-        this.fragments = fragments;
+        this.fragments = toColumnIndexed(fragments, numCols, size);
+        this.rowKeepAliveFrames = new IntArray(this.fragments.size);
+        this.rowEvicted = new BooleanArray(this.fragments.size);
+        this.rowDetailFrames = new IntArray(this.fragments.size);
+        this.rowCoarse = new BooleanArray(this.fragments.size);
+        this.store = createStore(numCols);
+        this.cellSize = size / cellsPerFragment;
+        this.surfaceCells = createSurface(numCols);
+        for (int r = 0; r < this.fragments.size; ++r) {
+            rowKeepAliveFrames.add(Cfg.Ground.EVICTION_DELAY_FRAMES);
+            rowEvicted.add(false);
+            rowDetailFrames.add(Cfg.Ground.COARSE_DELAY_FRAMES);
+            rowCoarse.add(false);
+            liveRows.add(r);
+            detailedRows.add(r);
+            assignChunks(r);
+        }
+        updateEmptySurface(0);
+        mergeSolidRegions(0, this.fragments.size - 1);
+        rebuildChunks();
+    }
+
+    /**
+     * Creates the store of evicted rows, which spills them to a temporary file. The rows are
+     * kept in direct buffers instead when the file cannot be created.
+     */
+    private static GroundStore createStore(int numCols) {
+        if (!Cfg.Ground.SPILL_EVICTED_ROWS) {
+            return null;
+        }
+        File spillFile;
+        try {
+            spillFile = File.createTempFile("ground", ".bin");
+            spillFile.deleteOnExit();
+        } catch (IOException e) {
+            spillFile = null;
+        }
+        return new GroundStore(numCols, Cfg.Ground.FRAGMENT_RESOLUTION, spillFile);
+    }
+
+    private static int[] createSurface(int numCols) {
+        int[] surface = new int[numCols * (Cfg.Ground.FRAGMENT_RESOLUTION - 1) + 1];
+        Arrays.fill(surface, NO_SURFACE);
+        return surface;
+    }
+
+    /**
+     * Places each fragment at the column index derived from its position, which also restores the
+     * column index of rows that have been saved in compacted form.
+     */
+    private static Array<Array<Fragment>> toColumnIndexed(Array<Array<Fragment>> fragments, int numCols, float size) {
+        Array<Array<Fragment>> result = new Array<>(Math.max(1024, fragments.size));
+        for (Array<Fragment> fragmentRow : fragments) {
+            Array<Fragment> row = createEmptyRow(numCols);
+            for (Fragment fragment : fragmentRow) {
+                if (fragment == null) continue;
+
+                int col = MathUtils.round(fragment.getLeftX() / size);
+                row.set(col, fragment);
+            }
+            result.add(row);
+        }
+        return result;
     }
 
     public int impact(float[] outRemovedVertices, Vector2 position, float radius) {
+        // only visit the fragments overlapped by the bounding box of the impact, with one fragment
+        // of margin to not miss any fragment due to rounding at the fragment borders
+        int minRow = Math.max(0, toRowIndex(position.y + radius) - 1);
+        int maxRow = Math.min(fragments.size - 1, toRowIndex(position.y - radius) + 1);
+        int minCol = Math.max(0, toColIndex(position.x - radius) - 1);
+        int maxCol = Math.min(numCols - 1, toColIndex(position.x + radius) + 1);
+
+        // restore evicted rows first, so that the fragments to split off the regions exist
+        for (int row = minRow; row <= maxRow; ++row) {
+            // keep the impacted rows alive, so that restored rows do not get evicted right away
+            rowKeepAliveFrames.set(row, Math.max(rowKeepAliveFrames.get(row), frame + Cfg.Ground.EVICTION_DELAY_FRAMES));
+            if (rowEvicted.get(row)) {
+                restoreRow(row);
+            }
+        }
+        splitSolidRegions(minRow, maxRow, minCol, maxCol);
+        mergeMinRow = Math.min(mergeMinRow, minRow);
+        mergeMaxRow = Math.max(mergeMaxRow, maxRow);
+
         int count = 0;
-        for (int row = 0; row < fragments.size; ++row) {
+        for (int row = minRow; row <= maxRow; ++row) {
+            // carving has to be exact where it happens
+            rowDetailFrames.set(row, Math.max(rowDetailFrames.get(row), frame + Cfg.Ground.COARSE_DELAY_FRAMES));
+            if (rowCoarse.get(row)) {
+                setRowCoarse(row, false);
+            }
+
             Array<Fragment> fragmentRow = fragments.get(row);
-            for (int col = fragmentRow.size - 1; col >= 0; --col) {
+            for (int col = minCol; col <= maxCol; ++col) {
                 Fragment fragment = fragmentRow.get(col);
+                if (fragment == null) continue;
+
+                boolean wasDirty = fragment.isDirty();
                 int removed = fragment.impact(outRemovedVertices, 2 * count, position, radius);
                 if (removed > 0) {
-                    if (fragment.isEmpty()) {
-                        fragmentRow.removeValue(fragment, true);
+                    if (!wasDirty) {
+                        dirtySlots.add(row * numCols + col);
                     }
+                    dirtySurfaceMinCell = Math.min(dirtySurfaceMinCell, col * cellsPerFragment);
+                    dirtySurfaceMaxCell = Math.max(dirtySurfaceMaxCell, (col + 1) * cellsPerFragment);
+                    frameCarves++;
                     lowestRowImpacted = Math.max(lowestRowImpacted, row);
                     count += removed;
                 }
@@ -63,31 +283,872 @@ public class Ground {
         return count;
     }
 
+    /**
+     * Rebuilds the bodies of all fragments that got carved since the last flush. This has to be
+     * called once after all impacts of a frame.
+     */
+    public void flushImpacts() {
+        tmpRebuildFragments.clear();
+        for (int k = 0; k < dirtySlots.size; ++k) {
+            int slot = dirtySlots.get(k);
+            Fragment fragment = fragments.get(slot / numCols).get(slot % numCols);
+            if (fragment != null && fragment.isDirty() && !fragment.isArchived()) {
+                tmpRebuildFragments.add(fragment);
+            }
+        }
+
+        if (tmpRebuildFragments.size >= Cfg.Ground.PARALLEL_REBUILD_MIN_FRAGMENTS
+                && FragmentGeometryWorkers.isAvailable()) {
+            // compute the geometry in parallel, but commit it to the physics world on this thread
+            geometryWorkers.compute(tmpRebuildFragments);
+            for (int k = 0; k < tmpRebuildFragments.size; ++k) {
+                tmpRebuildFragments.get(k).commitGeometry(geometryWorkers.getGeometry(k));
+            }
+        } else {
+            for (Fragment fragment : tmpRebuildFragments) {
+                fragment.rebuild();
+            }
+        }
+        frameRebuilds += tmpRebuildFragments.size;
+        tmpRebuildFragments.clear();
+
+        for (int k = 0; k < dirtySlots.size; ++k) {
+            int slot = dirtySlots.get(k);
+            publishCarve(slot / numCols, slot % numCols);
+        }
+        dirtySlots.clear();
+        updateSurface();
+        rebuildChunks();
+    }
+
+    /**
+     * Registers a listener of the changes of the ground, which gets notified about the changes
+     * from now on.
+     */
+    public void addListener(GroundListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(GroundListener listener) {
+        listeners.removeValue(listener, true);
+    }
+
+    /**
+     * Gets the version of the ground, which increases with each published change.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Publishes the carve of the fragment since it got published the last time, and removes the
+     * fragment when nothing is left of it.
+     */
+    private void publishCarve(int row, int col) {
+        Array<Fragment> fragmentRow = fragments.get(row);
+        Fragment fragment = fragmentRow.get(col);
+        if (fragment == null) {
+            return;
+        }
+        if (fragment.getFragmentData().hasRemovedBounds()) {
+            publishFragmentCarved(row, col, fragment);
+        }
+        if (fragment.isEmpty()) {
+            fragmentRow.set(col, null);
+            publishFragmentEmptied(row, col);
+        }
+    }
+
+    private void publishFragmentCarved(int row, int col, Fragment fragment) {
+        FragmentData data = fragment.getFragmentData();
+        int bottomCell = (row + 1) * cellsPerFragment;
+        int minCellX = col * cellsPerFragment + data.getRemovedMinI();
+        int maxCellX = col * cellsPerFragment + data.getRemovedMaxI();
+        int minCellY = bottomCell - data.getRemovedMaxJ();
+        int maxCellY = bottomCell - data.getRemovedMinJ();
+        data.clearRemovedBounds();
+        version++;
+        for (int k = 0; k < listeners.size; ++k) {
+            listeners.get(k).fragmentCarved(row, col, minCellX, minCellY, maxCellX, maxCellY, version);
+        }
+    }
+
+    private void publishFragmentEmptied(int row, int col) {
+        version++;
+        for (int k = 0; k < listeners.size; ++k) {
+            listeners.get(k).fragmentEmptied(row, col, col * cellsPerFragment, row * cellsPerFragment,
+                    (col + 1) * cellsPerFragment, (row + 1) * cellsPerFragment, version);
+        }
+    }
+
+    private void publishRowAdded(int row) {
+        version++;
+        for (int k = 0; k < listeners.size; ++k) {
+            listeners.get(k).rowAdded(row, 0, row * cellsPerFragment,
+                    numCols * cellsPerFragment, (row + 1) * cellsPerFragment, version);
+        }
+    }
+
+    private void publishRowEvicted(int row) {
+        version++;
+        for (int k = 0; k < listeners.size; ++k) {
+            listeners.get(k).rowEvicted(row, 0, row * cellsPerFragment,
+                    numCols * cellsPerFragment, (row + 1) * cellsPerFragment, version);
+        }
+    }
+
+    /**
+     * Moves the surface of the carved grid columns down to their topmost solid grid position,
+     * which can only be below the previous one because impacts only remove grid positions.
+     */
+    private void updateSurface() {
+        for (int c = dirtySurfaceMinCell; c <= dirtySurfaceMaxCell; ++c) {
+            if (surfaceCells[c] != NO_SURFACE) {
+                surfaceCells[c] = findSolidCell(c, surfaceCells[c]);
+            }
+        }
+        dirtySurfaceMinCell = Integer.MAX_VALUE;
+        dirtySurfaceMaxCell = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Searches the surface of the grid columns that do not have any solid grid position above the
+     * given one, such as when new rows got added below.
+     */
+    private void updateEmptySurface(int fromCell) {
+        for (int c = 0; c < surfaceCells.length; ++c) {
+            if (surfaceCells[c] == NO_SURFACE) {
+                surfaceCells[c] = findSolidCell(c, fromCell);
+            }
+        }
+    }
+
+    /**
+     * Finds the topmost solid grid position of the grid column at or below the given one, which
+     * also reads the grid data of spilled rows from the store.
+     */
+    private int findSolidCell(int c, int fromCell) {
+        int cells = cellsPerFragment;
+        int col = Math.min(c / cells, numCols - 1);
+        int i = c - col * cells;
+        // the border grid column is shared with the fragment to the left
+        boolean shared = i == 0 && col > 0;
+        // a grid position on a row border is the bottom of the row above as well
+        for (int row = Math.max(0, fromCell - 1) / cells; row < fragments.size; ++row) {
+            long column = getGridColumn(row, col, i);
+            if (shared) {
+                column |= getGridColumn(row, col - 1, cells);
+            }
+            // grid position j of the row is the grid position (row + 1) * cells - j of the ground
+            int maxJ = (row + 1) * cells - fromCell;
+            if (maxJ < Long.SIZE - 1) {
+                column &= (1L << (maxJ + 1)) - 1L;
+            }
+            if (column != 0L) {
+                return (row + 1) * cells - (Long.SIZE - 1 - Long.numberOfLeadingZeros(column));
+            }
+        }
+        return NO_SURFACE;
+    }
+
+    private long getGridColumn(int row, int col, int i) {
+        if (isRowSpilled(row)) {
+            return store.readColumn(row, col, i);
+        }
+        Fragment fragment = fragments.get(row).get(col);
+        return fragment != null ? fragment.getFragmentData().getColumn(i) : 0L;
+    }
+
+    private int toCellColumn(float x) {
+        return MathUtils.clamp(MathUtils.round(x / cellSize), 0, surfaceCells.length - 1);
+    }
+
+    private float toCellY(int cell) {
+        return cell == NO_SURFACE ? Float.NEGATIVE_INFINITY : -cell * cellSize;
+    }
+
+    /**
+     * Gets the vertical position of the topmost solid grid position in the grid column closest
+     * to the given horizontal position, or negative infinity when the column is empty. This does
+     * not touch the physics world and takes constant time.
+     */
+    public float getSurfaceY(float x) {
+        return toCellY(surfaceCells[toCellColumn(x)]);
+    }
+
+    /**
+     * Gets the vertical position of the first solid grid position at or below the given vertical
+     * position in the grid column closest to the given horizontal position, or negative infinity
+     * when there is none. This takes constant time when starting above the surface, and scans
+     * down the fragments of the column otherwise.
+     */
+    public float getFirstSolidY(float x, float topY) {
+        int c = toCellColumn(x);
+        int fromCell = Math.max(0, (int) Math.ceil(-topY / cellSize - GRID_EPSILON));
+        int surfaceCell = surfaceCells[c];
+        if (fromCell <= surfaceCell) {
+            return toCellY(surfaceCell);
+        }
+        return toCellY(findSolidCell(c, fromCell));
+    }
+
+    /**
+     * Checks whether any solid grid position lies within the given bounding box. Grid columns
+     * whose surface is below the box are ruled out in constant time each.
+     */
+    public boolean isOccupied(float minX, float minY, float maxX, float maxY) {
+        int minCell = Math.max(0, (int) Math.ceil(minX / cellSize - GRID_EPSILON));
+        int maxCell = Math.min(surfaceCells.length - 1, (int) Math.floor(maxX / cellSize + GRID_EPSILON));
+        int topCell = Math.max(0, (int) Math.ceil(-maxY / cellSize - GRID_EPSILON));
+        int bottomCell = (int) Math.floor(-minY / cellSize + GRID_EPSILON);
+        if (topCell > bottomCell) {
+            return false;
+        }
+        for (int c = minCell; c <= maxCell; ++c) {
+            int surfaceCell = surfaceCells[c];
+            if (surfaceCell == NO_SURFACE || surfaceCell > bottomCell) continue;
+
+            if (surfaceCell >= topCell || findSolidCell(c, topCell) <= bottomCell) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rebuilds the seamless chunks whose fragments changed.
+     */
+    private void rebuildChunks() {
+        for (int k = 0; k < dirtyChunks.size; ++k) {
+            dirtyChunks.get(k).rebuild(fragments);
+        }
+        frameChunkRebuilds += dirtyChunks.size;
+        dirtyChunks.clear();
+    }
+
+    private int toRowIndex(float y) {
+        return (int) Math.floor(-y / size);
+    }
+
+    private int toColIndex(float x) {
+        return (int) Math.floor(x / size);
+    }
+
+    /**
+     * Keeps all rows within the given vertical range alive, and restores them in case they have
+     * already been evicted. This has to be called each frame for every range that might get in
+     * touch with the physics world, such as the camera view or falling bombs.
+     */
+    public void keepAlive(float topY, float bottomY) {
+        int minRow = Math.max(0, toRowIndex(topY));
+        int maxRow = Math.min(fragments.size - 1, toRowIndex(bottomY));
+        for (int row = minRow; row <= maxRow; ++row) {
+            rowKeepAliveFrames.set(row, frame + Cfg.Ground.EVICTION_DELAY_FRAMES);
+            if (rowEvicted.get(row)) {
+                restoreRow(row);
+            }
+        }
+    }
+
+    /**
+     * Keeps all rows within the given vertical range at their full collision geometry, and
+     * refines them in case they are coarse. This has to be called each frame for every range
+     * that might get in touch with dynamic bodies, such as the camera view or falling bombs.
+     */
+    public void keepDetailed(float topY, float bottomY) {
+        int minRow = Math.max(0, toRowIndex(topY));
+        int maxRow = Math.min(fragments.size - 1, toRowIndex(bottomY));
+        for (int row = minRow; row <= maxRow; ++row) {
+            rowDetailFrames.set(row, frame + Cfg.Ground.COARSE_DELAY_FRAMES);
+            if (rowCoarse.get(row)) {
+                setRowCoarse(row, false);
+            }
+        }
+    }
+
+    /**
+     * Resets the counters of the current frame. This has to be called at the start of each frame,
+     * before the rows get kept alive and detailed, because refining a row already counts as a
+     * change of the frame.
+     */
+    public void beginFrame() {
+        frameCarves = 0;
+        frameDetailChanges = 0;
+        frameRebuilds = 0;
+        frameChunkRebuilds = 0;
+    }
+
     public void update() {
+        frame++;
         updateRows();
+        evictRows();
+        coarsenRows();
+        if (frame % Cfg.Ground.SOLID_REGION_MERGE_INTERVAL_FRAMES == 0 && mergeMinRow <= mergeMaxRow) {
+            // the impacted rows are live, and the other live rows get coalesced along with them
+            for (int k = 0; k < liveRows.size; ++k) {
+                mergeMinRow = Math.min(mergeMinRow, liveRows.get(k));
+                mergeMaxRow = Math.max(mergeMaxRow, liveRows.get(k));
+            }
+            mergeSolidRegions(mergeMinRow, mergeMaxRow);
+            mergeMinRow = Integer.MAX_VALUE;
+            mergeMaxRow = -1;
+        }
+        rebuildChunks();
+    }
+
+    /**
+     * Requests the rows down to the given vertical position to exist ahead of time, such as the
+     * rows the player is about to dig into. They get added over the next updates, with at most
+     * {@link Cfg.Ground#MAX_NEW_ROWS_PER_UPDATE} rows per update.
+     */
+    public void requestRows(float bottomY) {
+        requestedRows = Math.max(requestedRows, toRowIndex(bottomY) + 1);
     }
 
     private void updateRows() {
-        int missingRows = numCompleteRows - (fragments.size - lowestRowImpacted) + 1;
-        for (int i = 0; i < missingRows; ++i) {
-            fragments.add(createRow(world, numCols, fragments.size, size));
+        // rows below the lowest impact are required right away, while requested rows can wait
+        int requiredRows = lowestRowImpacted + numCompleteRows + 1;
+        int missingRows = Math.max(requiredRows - fragments.size,
+                Math.min(requestedRows - fragments.size, Cfg.Ground.MAX_NEW_ROWS_PER_UPDATE));
+        if (missingRows > 0) {
+            addSolidRows(missingRows);
+        }
+    }
+
+    /**
+     * Adds new rows of solid fragments, which are covered by extending the region of the row
+     * above when that one spans all columns as well, or by a new region otherwise. The region
+     * is updated only once for all rows, which is a single body update in the physics world.
+     */
+    private void addSolidRows(int count) {
+        int firstRow = fragments.size;
+        for (int k = 0; k < count; ++k) {
+            addRow(createRow(world, numCols, fragments.size, size));
+        }
+        int lastRow = fragments.size - 1;
+        boolean extended = false;
+        for (int k = 0; k < solidRegions.size && !extended; ++k) {
+            SolidRegion region = solidRegions.get(k);
+            if (region.getMaxRow() == firstRow - 1 && region.getMinCol() == 0 && region.getMaxCol() == numCols - 1) {
+                region.destroy(world);
+                solidRegions.set(k, new SolidRegion(world, region.getMinRow(), lastRow, 0, numCols - 1, size));
+                extended = true;
+            }
+        }
+        if (!extended) {
+            addSolidRegion(firstRow, lastRow, 0, numCols - 1);
+        }
+        // the rows are complete once they are covered by their region
+        for (int row = firstRow; row <= lastRow; ++row) {
+            publishRowAdded(row);
+        }
+    }
+
+    /**
+     * Recomputes the regions of the solid fragments in the given rows using a greedy rectangle
+     * merge in scan order, which also coalesces regions that got fragmented by previous splits.
+     * Only the regions within the rows are recomputed, whereas regions that reach beyond them
+     * are kept as they are, so that the merge does not scan the deep rows below the impacts.
+     * Regions that did not change are kept, so that only the changed ones cause body updates in
+     * the physics world.
+     */
+    private void mergeSolidRegions(int minRow, int maxRow) {
+        // the regions outside of the candidates stay in place and are not mergeable again
+        tmpCandidateRegions.clear();
+        for (int k = solidRegions.size - 1; k >= 0; --k) {
+            SolidRegion region = solidRegions.get(k);
+            if (region.getMinRow() >= minRow && region.getMaxRow() <= maxRow) {
+                tmpCandidateRegions.add(region);
+                solidRegions.removeIndex(k);
+            }
+        }
+
+        tmpMergedRegions.clear();
+        for (int row = minRow; row <= maxRow; ++row) {
+            for (int col = 0; col < numCols; ++col) {
+                if (!isMergeable(row, col)) continue;
+
+                int maxCol = col;
+                while (maxCol + 1 < numCols && isMergeable(row, maxCol + 1)) {
+                    maxCol++;
+                }
+                int regionMaxRow = row;
+                while (regionMaxRow + 1 <= maxRow && isMergeable(regionMaxRow + 1, col, maxCol)) {
+                    regionMaxRow++;
+                }
+
+                tmpMergedRegions.add(row, regionMaxRow, col, maxCol);
+                col = maxCol;
+            }
+        }
+        coalesceMergedRegions();
+
+        // keep the unchanged candidates, and replace all others
+        tmpRemovedRegions.clear();
+        for (SolidRegion region : tmpCandidateRegions) {
+            int index = indexOf(tmpMergedRegions, region);
+            if (index >= 0) {
+                tmpMergedRegions.removeRange(index, index + 3);
+                solidRegions.add(region);
+            } else {
+                tmpRemovedRegions.add(region.getMinRow(), region.getMaxRow(), region.getMinCol(), region.getMaxCol());
+                region.destroy(world);
+            }
+        }
+        tmpCandidateRegions.clear();
+        for (int k = 0; k < tmpMergedRegions.size; k += 4) {
+            int regionMinRow = tmpMergedRegions.get(k);
+            int regionMaxRow = tmpMergedRegions.get(k + 1);
+            int minCol = tmpMergedRegions.get(k + 2);
+            int maxCol = tmpMergedRegions.get(k + 3);
+            for (int row = regionMinRow; row <= regionMaxRow; ++row) {
+                for (int col = minCol; col <= maxCol; ++col) {
+                    // spilled fragments get merged when they are restored
+                    Fragment fragment = fragments.get(row).get(col);
+                    if (fragment != null && !fragment.isMerged()) {
+                        fragment.merge();
+                    }
+                }
+            }
+            addSolidRegion(regionMinRow, regionMaxRow, minCol, maxCol);
+        }
+        // fragments of removed regions that are not covered any longer need bodies of their own
+        for (int k = 0; k < tmpRemovedRegions.size; k += 4) {
+            for (int row = tmpRemovedRegions.get(k); row <= tmpRemovedRegions.get(k + 1); ++row) {
+                for (int col = tmpRemovedRegions.get(k + 2); col <= tmpRemovedRegions.get(k + 3); ++col) {
+                    Fragment fragment = fragments.get(row).get(col);
+                    if (fragment != null && !isCoveredBySolidRegion(row, col)) {
+                        fragment.unmerge();
+                    }
+                }
+            }
+        }
+        tmpMergedRegions.clear();
+        tmpRemovedRegions.clear();
+    }
+
+    /**
+     * Extends the merged regions by the kept regions that share a whole edge with them, which
+     * keeps the regions beyond the merged rows from getting fragmented by each merge. Regions
+     * that are still too small afterwards are dropped.
+     */
+    private void coalesceMergedRegions() {
+        for (int k = tmpMergedRegions.size - 4; k >= 0; k -= 4) {
+            int minRow = tmpMergedRegions.get(k);
+            int maxRow = tmpMergedRegions.get(k + 1);
+            int minCol = tmpMergedRegions.get(k + 2);
+            int maxCol = tmpMergedRegions.get(k + 3);
+            boolean extended = true;
+            while (extended) {
+                extended = false;
+                for (int r = solidRegions.size - 1; r >= 0; --r) {
+                    SolidRegion region = solidRegions.get(r);
+                    boolean sameCols = region.getMinCol() == minCol && region.getMaxCol() == maxCol;
+                    boolean sameRows = region.getMinRow() == minRow && region.getMaxRow() == maxRow;
+                    if (sameCols && (region.getMaxRow() == minRow - 1 || region.getMinRow() == maxRow + 1)
+                            || sameRows && (region.getMaxCol() == minCol - 1 || region.getMinCol() == maxCol + 1)) {
+                        minRow = Math.min(minRow, region.getMinRow());
+                        maxRow = Math.max(maxRow, region.getMaxRow());
+                        minCol = Math.min(minCol, region.getMinCol());
+                        maxCol = Math.max(maxCol, region.getMaxCol());
+                        region.destroy(world);
+                        solidRegions.removeIndex(r);
+                        extended = true;
+                    }
+                }
+            }
+
+            if ((maxRow - minRow + 1) * (maxCol - minCol + 1) >= Cfg.Ground.SOLID_REGION_MIN_FRAGMENTS) {
+                tmpMergedRegions.set(k, minRow);
+                tmpMergedRegions.set(k + 1, maxRow);
+                tmpMergedRegions.set(k + 2, minCol);
+                tmpMergedRegions.set(k + 3, maxCol);
+            } else {
+                tmpMergedRegions.removeRange(k, k + 3);
+            }
+        }
+    }
+
+    private boolean isCoveredBySolidRegion(int row, int col) {
+        for (SolidRegion region : solidRegions) {
+            if (region.overlaps(row, row, col, col)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int indexOf(IntArray regions, SolidRegion region) {
+        for (int k = 0; k < regions.size; k += 4) {
+            if (regions.get(k) == region.getMinRow() && regions.get(k + 1) == region.getMaxRow()
+                    && regions.get(k + 2) == region.getMinCol() && regions.get(k + 3) == region.getMaxCol()) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isCovered(IntArray regions, int row, int col) {
+        for (int k = 0; k < regions.size; k += 4) {
+            if (row >= regions.get(k) && row <= regions.get(k + 1)
+                    && col >= regions.get(k + 2) && col <= regions.get(k + 3)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isMergeable(int row, int minCol, int maxCol) {
+        for (int col = minCol; col <= maxCol; ++col) {
+            if (!isMergeable(row, col)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the fragment is solid and neither covered by any region of the current
+     * merge nor by any of the regions that are kept.
+     */
+    private boolean isMergeable(int row, int col) {
+        if (isCovered(tmpMergedRegions, row, col) || isCoveredBySolidRegion(row, col)) {
+            return false;
+        }
+        if (isRowSpilled(row)) {
+            return store.getKind(row, col) == GroundStore.SOLID;
+        }
+        Fragment fragment = fragments.get(row).get(col);
+        return fragment != null && fragment.isSolid();
+    }
+
+    /**
+     * Splits the regions that overlap the given range, so that the fragments within the range
+     * get bodies of their own again. The remaining parts of each region stay merged.
+     */
+    private void splitSolidRegions(int minRow, int maxRow, int minCol, int maxCol) {
+        for (int k = solidRegions.size - 1; k >= 0; --k) {
+            SolidRegion region = solidRegions.get(k);
+            if (!region.overlaps(minRow, maxRow, minCol, maxCol)) continue;
+
+            region.destroy(world);
+            solidRegions.removeIndex(k);
+
+            int splitMinRow = Math.max(minRow, region.getMinRow());
+            int splitMaxRow = Math.min(maxRow, region.getMaxRow());
+            int splitMinCol = Math.max(minCol, region.getMinCol());
+            int splitMaxCol = Math.min(maxCol, region.getMaxCol());
+            addSolidRegion(region.getMinRow(), splitMinRow - 1, region.getMinCol(), region.getMaxCol());
+            addSolidRegion(splitMaxRow + 1, region.getMaxRow(), region.getMinCol(), region.getMaxCol());
+            addSolidRegion(splitMinRow, splitMaxRow, region.getMinCol(), splitMinCol - 1);
+            addSolidRegion(splitMinRow, splitMaxRow, splitMaxCol + 1, region.getMaxCol());
+
+            for (int row = splitMinRow; row <= splitMaxRow; ++row) {
+                Array<Fragment> fragmentRow = fragments.get(row);
+                for (int col = splitMinCol; col <= splitMaxCol; ++col) {
+                    fragmentRow.get(col).unmerge();
+                }
+            }
+        }
+    }
+
+    private void addSolidRegion(int minRow, int maxRow, int minCol, int maxCol) {
+        if (minRow > maxRow || minCol > maxCol) {
+            return;
+        }
+        solidRegions.add(new SolidRegion(world, minRow, maxRow, minCol, maxCol, size));
+    }
+
+    private void addRow(Array<Fragment> row) {
+        fragments.add(row);
+        assignChunks(fragments.size - 1);
+        rowKeepAliveFrames.add(frame + Cfg.Ground.EVICTION_DELAY_FRAMES);
+        rowEvicted.add(false);
+        rowDetailFrames.add(frame + Cfg.Ground.COARSE_DELAY_FRAMES);
+        rowCoarse.add(false);
+        liveRows.add(fragments.size - 1);
+        detailedRows.add(fragments.size - 1);
+        updateEmptySurface((fragments.size - 1) * cellsPerFragment);
+    }
+
+    /**
+     * Moves the fragments of the row to the shared bodies of their chunks, which creates the
+     * chunks of the row if necessary.
+     */
+    private void assignChunks(int row) {
+        int chunkSize = Cfg.Ground.BODY_CHUNK_SIZE;
+        int chunkRow = row / chunkSize;
+        while (chunks.size <= chunkRow) {
+            int numChunkCols = (numCols + chunkSize - 1) / chunkSize;
+            GroundChunk[] chunkRowData = new GroundChunk[numChunkCols];
+            for (int chunkCol = 0; chunkCol < numChunkCols; ++chunkCol) {
+                chunkRowData[chunkCol] = new GroundChunk(world, chunks.size * chunkSize, chunkCol * chunkSize,
+                        chunkSize, size, seamlessChunks, dirtyChunks);
+            }
+            chunks.add(chunkRowData);
+        }
+
+        GroundChunk[] chunkRowData = chunks.get(chunkRow);
+        Array<Fragment> fragmentRow = fragments.get(row);
+        for (int col = 0; col < numCols; ++col) {
+            Fragment fragment = fragmentRow.get(col);
+            if (fragment == null) continue;
+            fragment.setChunk(chunkRowData[col / chunkSize]);
+        }
+    }
+
+    private void evictRows() {
+        int evictions = 0;
+        for (int k = 0; k < liveRows.size && evictions < MAX_EVICTIONS_PER_UPDATE; ++k) {
+            int row = liveRows.get(k);
+            if (rowKeepAliveFrames.get(row) < frame) {
+                liveRows.removeIndex(k--);
+                for (Fragment fragment : fragments.get(row)) {
+                    if (fragment == null) continue;
+                    fragment.archive();
+                }
+                // carves that have not been flushed yet would get lost with the spilled fragments
+                for (int col = 0; col < numCols; ++col) {
+                    publishCarve(row, col);
+                }
+                if (store != null) {
+                    spillRow(row);
+                }
+                rowEvicted.set(row, true);
+                publishRowEvicted(row);
+                evictions++;
+            }
         }
     }
 
+    private void coarsenRows() {
+        int coarsenings = 0;
+        for (int k = 0; k < detailedRows.size && coarsenings < MAX_COARSENINGS_PER_UPDATE; ++k) {
+            int row = detailedRows.get(k);
+            if (rowDetailFrames.get(row) < frame) {
+                detailedRows.removeIndex(k--);
+                setRowCoarse(row, true);
+                coarsenings++;
+            }
+        }
+    }
+
+    /**
+     * Switches the collision geometry of all fragments in the row, whose bodies get updated with
+     * the next flush.
+     */
+    private void setRowCoarse(int row, boolean coarse) {
+        Array<Fragment> fragmentRow = fragments.get(row);
+        for (int col = 0; col < numCols; ++col) {
+            Fragment fragment = fragmentRow.get(col);
+            if (fragment == null) continue;
+
+            boolean wasDirty = fragment.isDirty();
+            fragment.setCoarse(coarse);
+            if (!wasDirty && fragment.isDirty()) {
+                dirtySlots.add(row * numCols + col);
+                frameDetailChanges++;
+            }
+        }
+        rowCoarse.set(row, coarse);
+        if (!coarse) {
+            // rows that turn coarse are taken off the candidates by coarsenRows()
+            detailedRows.add(row);
+        }
+    }
+
+    public boolean isRowCoarse(int row) {
+        return rowCoarse.get(row);
+    }
+
+    /**
+     * Writes the grid data of the archived fragments of the row to the store, and drops the
+     * fragments so that they do not occupy the heap any longer.
+     */
+    private void spillRow(int row) {
+        Array<Fragment> fragmentRow = fragments.get(row);
+        for (int col = 0; col < numCols; ++col) {
+            Fragment fragment = fragmentRow.get(col);
+            if (fragment == null) {
+                store.writeEmpty(row, col);
+            } else if (fragment.isSolid()) {
+                store.writeSolid(row, col);
+            } else {
+                store.writeColumns(row, col, fragment.getFragmentData());
+            }
+            fragmentRow.set(col, null);
+        }
+    }
+
+    /**
+     * Recreates the fragments of a spilled row from the store, which are archived until the row
+     * gets restored. Solid fragments that are covered by a region are merged right away.
+     */
+    private void unspillRow(int row) {
+        Array<Fragment> fragmentRow = fragments.get(row);
+        for (int col = 0; col < numCols; ++col) {
+            Fragment fragment = readSpilledFragment(row, col, true);
+            if (fragment == null) continue;
+
+            fragment.setCoarse(rowCoarse.get(row));
+            fragmentRow.set(col, fragment);
+        }
+        assignChunks(row);
+    }
+
+    private Fragment readSpilledFragment(int row, int col, boolean mergeable) {
+        byte kind = store.getKind(row, col);
+        if (kind == GroundStore.EMPTY) {
+            return null;
+        }
+        FragmentData fragmentData;
+        boolean merged = false;
+        if (kind == GroundStore.SOLID) {
+            fragmentData = FragmentData.getSolidTemplate(Cfg.Ground.FRAGMENT_RESOLUTION, size);
+            merged = mergeable && isCoveredBySolidRegion(row, col);
+        } else {
+            fragmentData = new FragmentData(size, Cfg.Ground.FRAGMENT_RESOLUTION, store.readColumns(row, col));
+        }
+        return new Fragment(world, col * size, -(row + 1) * size, size, fragmentData, merged, true);
+    }
+
+    private boolean isRowSpilled(int row) {
+        return store != null && rowEvicted.get(row);
+    }
+
+    private void restoreRow(int row) {
+        if (store != null) {
+            unspillRow(row);
+        }
+        for (Fragment fragment : fragments.get(row)) {
+            if (fragment == null) continue;
+            fragment.restore();
+        }
+        rowEvicted.set(row, false);
+        liveRows.add(row);
+    }
+
+    public boolean isRowEvicted(int row) {
+        return rowEvicted.get(row);
+    }
+
+    private static Array<Fragment> createEmptyRow(int numCols) {
+        Array<Fragment> row = new Array<>(numCols);
+        row.setSize(numCols);
+        return row;
+    }
+
+    /**
+     * Creates a row of solid fragments, which are merged right away and have to be covered by a
+     * region.
+     */
     private static Array<Fragment> createRow(World world, int numCols, int rowIdx, float size) {
         Array<Fragment> row = new Array<>(numCols);
+        FragmentData solidTemplate = FragmentData.getSolidTemplate(Cfg.Ground.FRAGMENT_RESOLUTION, size);
         for (int col = 0; col < numCols; ++col) {
             float posX = col * size;
             float posY = -(rowIdx + 1) * size;
-            row.add(new Fragment(world, posX, posY, size));
+            row.add(new Fragment(world, posX, posY, size, solidTemplate, true));
         }
         return row;
     }
 
+    /**
+     * Gets the number of fragment carves in the current frame, which starts with
+     * {@link #beginFrame()}.
+     */
+    public int getFrameCarves() {
+        return frameCarves;
+    }
+
+    /**
+     * Gets the number of body rebuilds in the current frame.
+     */
+    public int getFrameRebuilds() {
+        return frameRebuilds;
+    }
+
+    /**
+     * Gets the number of seamless chunk rebuilds in the current frame.
+     */
+    public int getFrameChunkRebuilds() {
+        return frameChunkRebuilds;
+    }
+
+    /**
+     * Gets the number of fragments in the current frame whose collision geometry switched between
+     * coarse and full.
+     */
+    public int getFrameDetailChanges() {
+        return frameDetailChanges;
+    }
+
+    /**
+     * Gets the number of body rebuilds in the current frame that have been saved by coalescing
+     * multiple carves and detail changes of the same fragment.
+     */
+    public int getFrameRebuildsSaved() {
+        return frameCarves + frameDetailChanges - frameRebuilds;
+    }
+
+    /**
+     * Gets the horizontal and vertical distance between neighboring grid positions.
+     */
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    public Array<SolidRegion> getSolidRegions() {
+        return solidRegions;
+    }
+
+    /**
+     * Gets all fragments in shape [row, cols], where completely removed fragments are null, as
+     * well as the fragments of rows that have been spilled to the store.
+     */
     public Array<Array<Fragment>> getFragments() {
         return fragments;
     }
 
+    /**
+     * Gets all fragments like {@link #getFragments()}, but with the fragments of spilled rows
+     * read back from the store. These are archived and do not have any bodies.
+     */
+    private Array<Array<Fragment>> getAllFragments() {
+        if (store == null) {
+            return fragments;
+        }
+        Array<Array<Fragment>> result = new Array<>(fragments.size);
+        for (int row = 0; row < fragments.size; ++row) {
+            if (!isRowSpilled(row)) {
+                result.add(fragments.get(row));
+                continue;
+            }
+            Array<Fragment> fragmentRow = createEmptyRow(numCols);
+            for (int col = 0; col < numCols; ++col) {
+                fragmentRow.set(col, readSpilledFragment(row, col, false));
+            }
+            result.add(fragmentRow);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of bytes of the store of spilled rows outside of the Java heap.
+     */
+    public long getStoreCapacityBytes() {
+        return store != null ? store.getCapacityBytes() : 0L;
+    }
+
+    /**
+     * Releases the store of spilled rows.
+     */
+    public void dispose() {
+        if (store != null) {
+            store.dispose();
+        }
+    }
+
     public static class KryoSerializer extends Serializer<Ground> {
 
         private final World world;
@@ -101,7 +1162,7 @@ public class Ground {
             output.writeInt(object.numCols);
             output.writeInt(object.numCompleteRows);
             output.writeFloat(object.size);
-            kryo.writeObject(output, object.getFragments());
+            kryo.writeObject(output, object.getAllFragments());
         }
 
         @Override
@@ -0,0 +1,248 @@
+package de.bsautermeister.bomb.objects;
+
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
+
+import de.bsautermeister.bomb.Cfg;
+
+/**
+ * Static body that is shared by the fragments of a chunk of rows and columns. Either each
+ * fragment owns its fixtures on that body, or the chunk is seamless and owns all fixtures itself.
+ * A seamless chunk stitches the grids of its fragments together, so that its outlines continue
+ * across the fragment borders without any vertices at the seams. The body gets created when it
+ * is needed first, and destroyed when the last user releases it.
+ */
+public class GroundChunk {
+
+    private static final BodyDef BODY_DEF = new BodyDef();
+    static {
+        BODY_DEF.type = BodyDef.BodyType.StaticBody;
+    }
+
+    private static final FloatArray tmpPolygons = new FloatArray();
+    private static final IntArray tmpVertexCounts = new IntArray();
+    private static long[] tmpColumns;
+
+    private final World world;
+    private final int minRow;
+    private final int minCol;
+    private final int chunkSize;
+    private final float fragmentSize;
+    private final float x;
+    private final float y;
+
+    private Body body;
+    private int numUsers;
+
+    private final boolean seamless;
+    /**
+     * Chunks that have to be rebuilt, which is shared by all chunks of the ground.
+     */
+    private final Array<GroundChunk> dirtyChunks;
+    private boolean dirty;
+    private final GroundFixtures fixtures = new GroundFixtures();
+    private boolean hasFixtures;
+    /**
+     * Stitched grid of the last rebuild, which keeps the outlines of unchanged clusters cached
+     * as long as the grid only loses grid positions.
+     */
+    private FragmentData stitchedData;
+
+    /**
+     * Creates a chunk of the fragments in the rows [minRow, minRow + chunkSize) and the columns
+     * [minCol, minCol + chunkSize), whose body is located at the bottom left corner.
+     */
+    public GroundChunk(World world, int minRow, int minCol, int chunkSize, float fragmentSize,
+                       boolean seamless, Array<GroundChunk> dirtyChunks) {
+        this.world = world;
+        this.minRow = minRow;
+        this.minCol = minCol;
+        this.chunkSize = chunkSize;
+        this.fragmentSize = fragmentSize;
+        this.x = minCol * fragmentSize;
+        this.y = -(minRow + chunkSize) * fragmentSize;
+        this.seamless = seamless;
+        this.dirtyChunks = dirtyChunks;
+    }
+
+    /**
+     * Gets the resolution of the stitched grid of a seamless chunk, whose fragments share their
+     * border grid positions.
+     */
+    public static int getSeamlessResolution(int chunkSize, int fragmentResolution) {
+        return chunkSize * (fragmentResolution - 1) + 1;
+    }
+
+    /**
+     * Gets the body to attach fixtures to, which has to be released by each caller once it does
+     * not have any fixtures on it any longer.
+     */
+    public Body obtainBody() {
+        if (body == null) {
+            BODY_DEF.position.set(x, y);
+            body = world.createBody(BODY_DEF);
+        }
+        numUsers++;
+        return body;
+    }
+
+    public void releaseBody() {
+        if (numUsers == 0) {
+            throw new IllegalStateException("Body of the chunk has not been obtained.");
+        }
+        numUsers--;
+        if (numUsers == 0) {
+            world.destroyBody(body);
+            body = null;
+        }
+    }
+
+    /**
+     * Marks a seamless chunk to be rebuilt, because the collision of one of its fragments changed.
+     */
+    public void invalidate() {
+        if (seamless && !dirty) {
+            dirty = true;
+            dirtyChunks.add(this);
+        }
+    }
+
+    /**
+     * Rebuilds the fixtures of a seamless chunk from the stitched grids of its fragments, where
+     * archived and merged fragments are left out. The geometry is coarse when all fragments are.
+     * This has to be called on the main thread.
+     */
+    public void rebuild(Array<Array<Fragment>> fragments) {
+        dirty = false;
+        tmpPolygons.clear();
+        tmpVertexCounts.clear();
+        Fragment.ColliderType colliderType = Fragment.getColliderType();
+
+        int fragmentResolution = Cfg.Ground.FRAGMENT_RESOLUTION;
+        int cells = fragmentResolution - 1;
+        long[] columns = null;
+        boolean coarse = true;
+        int maxRow = Math.min(minRow + chunkSize, fragments.size);
+        for (int row = minRow; row < maxRow; ++row) {
+            Array<Fragment> fragmentRow = fragments.get(row);
+            int maxCol = Math.min(minCol + chunkSize, fragmentRow.size);
+            for (int col = minCol; col < maxCol; ++col) {
+                Fragment fragment = fragmentRow.get(col);
+                if (fragment == null || fragment.isArchived() || fragment.isMerged()) continue;
+
+                if (columns == null) {
+                    columns = getClearedColumns(getSeamlessResolution(chunkSize, fragmentResolution));
+                }
+                FragmentData data = fragment.getFragmentData();
+                int offsetI = (col - minCol) * cells;
+                int offsetJ = (minRow + chunkSize - 1 - row) * cells;
+                for (int i = 0; i < fragmentResolution; ++i) {
+                    // the border grid positions are shared with the neighbors
+                    columns[offsetI + i] |= data.getColumn(i) << offsetJ;
+                }
+                coarse &= fragment.isCoarse();
+            }
+        }
+
+        if (columns == null) {
+            releaseStitchedData();
+        } else {
+            FragmentData data = updateStitchedData(columns);
+            if (coarse) {
+                data = data.downsample(getSeamlessResolution(chunkSize, Cfg.Ground.COARSE_FRAGMENT_RESOLUTION));
+            }
+            Fragment.computeCollisionGeometry(data.computeOutlines(), data.getDelta(), colliderType,
+                    tmpPolygons, tmpVertexCounts);
+            if (coarse) {
+                data.releaseOutlines();
+            }
+        }
+
+        if (tmpVertexCounts.size == 0) {
+            if (hasFixtures) {
+                fixtures.destroy(body);
+                hasFixtures = false;
+                releaseBody();
+            }
+            return;
+        }
+
+        if (!hasFixtures) {
+            obtainBody();
+            hasFixtures = true;
+        }
+        fixtures.update(body, tmpPolygons, tmpVertexCounts, colliderType, 0f, 0f, this);
+    }
+
+    private static long[] getClearedColumns(int resolution) {
+        if (tmpColumns == null || tmpColumns.length != resolution) {
+            tmpColumns = new long[resolution];
+        }
+        Arrays.fill(tmpColumns, 0L);
+        return tmpColumns;
+    }
+
+    /**
+     * Updates the stitched grid to the given columns. Carves only remove grid positions, which
+     * get removed from the previous grid so that only the affected outlines are recomputed. The
+     * grid is recreated when positions got added, such as when a fragment got restored.
+     */
+    private FragmentData updateStitchedData(long[] columns) {
+        if (stitchedData != null && stitchedData.getResolution() == columns.length) {
+            boolean onlyRemoved = true;
+            for (int i = 0; i < columns.length && onlyRemoved; ++i) {
+                onlyRemoved = (columns[i] & ~stitchedData.getColumn(i)) == 0L;
+            }
+            if (onlyRemoved) {
+                for (int i = 0; i < columns.length; ++i) {
+                    stitchedData.removeFromColumn(i, ~columns[i]);
+                }
+                return stitchedData;
+            }
+        }
+        releaseStitchedData();
+        stitchedData = new FragmentData(chunkSize * fragmentSize, columns.length, columns.clone());
+        return stitchedData;
+    }
+
+    private void releaseStitchedData() {
+        if (stitchedData != null) {
+            stitchedData.releaseOutlines();
+            stitchedData = null;
+        }
+    }
+
+    /**
+     * Gets the stitched grid of the last rebuild, or null when the chunk did not have any
+     * fragments with collision geometry.
+     */
+    FragmentData getStitchedData() {
+        return stitchedData;
+    }
+
+    public boolean isSeamless() {
+        return seamless;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public Body getBody() {
+        return body;
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public float getY() {
+        return y;
+    }
+}
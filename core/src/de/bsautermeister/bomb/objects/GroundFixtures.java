@@ -0,0 +1,169 @@
+package de.bsautermeister.bomb.objects;
+
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.ChainShape;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.BooleanArray;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Fixtures of a fragment or a chunk on a static ground body, together with the polygon of each
+ * fixture. Updating them to new polygons only touches the fixtures whose polygon changed, which
+ * avoids to rebuild the whole body in the physics world after each impact.
+ */
+public class GroundFixtures {
+
+    /**
+     * Shape that is shared by all fixtures. It gets created lazily, because it requires the
+     * Box2D natives to be loaded.
+     */
+    private static PolygonShape sharedShape;
+
+    private static final BooleanArray tmpMatchedPolygons = new BooleanArray();
+    private static final IntArray tmpPolygonOffsets = new IntArray();
+    private static final FloatArray tmpBodyVertices = new FloatArray();
+
+    /**
+     * Fixtures of the body, and the polygon of each fixture in the same order.
+     */
+    private final Array<Fixture> fixtures = new Array<>(8);
+    private final FloatArray fixturePolygons = new FloatArray(48);
+    private final IntArray fixtureVertexCounts = new IntArray(8);
+    private Fragment.ColliderType colliderType = Fragment.ColliderType.POLYGONS;
+
+    /**
+     * Updates the fixtures on the body to the given convex polygons or chain loops, by only
+     * destroying the fixtures of polygons that do not exist anymore and only creating fixtures
+     * for new polygons. The polygons are translated by the offset into the coordinates of the
+     * body. This has to be called on the main thread.
+     */
+    public void update(Body body, FloatArray polygons, IntArray vertexCounts, Fragment.ColliderType colliderType,
+                       float offsetX, float offsetY, Object userData) {
+        if (this.colliderType != colliderType) {
+            // fixtures of another collider type cannot be kept, even when their vertices match
+            destroy(body);
+            this.colliderType = colliderType;
+        }
+
+        tmpMatchedPolygons.clear();
+        tmpPolygonOffsets.clear();
+        int polygonOffset = 0;
+        for (int p = 0; p < vertexCounts.size; ++p) {
+            tmpMatchedPolygons.add(false);
+            tmpPolygonOffsets.add(polygonOffset);
+            polygonOffset += 2 * vertexCounts.get(p);
+        }
+
+        int kept = 0;
+        int keptOffset = 0;
+        int fixtureOffset = 0;
+        for (int f = 0; f < fixtures.size; ++f) {
+            Fixture fixture = fixtures.get(f);
+            int length = 2 * fixtureVertexCounts.get(f);
+            int match = findPolygon(polygons, vertexCounts, fixturePolygons.items, fixtureOffset, length);
+            if (match >= 0) {
+                tmpMatchedPolygons.set(match, true);
+                fixtures.set(kept, fixture);
+                fixtureVertexCounts.set(kept, length / 2);
+                System.arraycopy(fixturePolygons.items, fixtureOffset,
+                        fixturePolygons.items, keptOffset, length);
+                kept++;
+                keptOffset += length;
+            } else {
+                body.destroyFixture(fixture);
+            }
+            fixtureOffset += length;
+        }
+        fixtures.truncate(kept);
+        fixtureVertexCounts.truncate(kept);
+        fixturePolygons.truncate(keptOffset);
+
+        for (int p = 0; p < vertexCounts.size; ++p) {
+            if (tmpMatchedPolygons.get(p)) continue;
+
+            int offset = tmpPolygonOffsets.get(p);
+            int length = 2 * vertexCounts.get(p);
+            tmpBodyVertices.clear();
+            for (int k = 0; k < length; k += 2) {
+                tmpBodyVertices.add(polygons.items[offset + k] + offsetX,
+                        polygons.items[offset + k + 1] + offsetY);
+            }
+            Fixture fixture;
+            if (colliderType == Fragment.ColliderType.CHAIN_LOOPS) {
+                // a chain shape cannot be reused, because its vertices can only be set once
+                ChainShape chainShape = new ChainShape();
+                chainShape.createLoop(tmpBodyVertices.items, 0, length);
+                Fragment.FIXTURE_DEF.shape = chainShape;
+                fixture = body.createFixture(Fragment.FIXTURE_DEF);
+                chainShape.dispose();
+            } else {
+                PolygonShape shape = getSharedShape();
+                shape.set(tmpBodyVertices.items, 0, length);
+                Fragment.FIXTURE_DEF.shape = shape;
+                fixture = body.createFixture(Fragment.FIXTURE_DEF);
+            }
+            fixture.setUserData(userData);
+            fixtures.add(fixture);
+            fixtureVertexCounts.add(length / 2);
+            fixturePolygons.addAll(polygons.items, offset, length);
+        }
+        Fragment.FIXTURE_DEF.shape = null;
+    }
+
+    /**
+     * Destroys all fixtures on the body, which is still used by others.
+     */
+    public void destroy(Body body) {
+        for (Fixture fixture : fixtures) {
+            body.destroyFixture(fixture);
+        }
+        clear();
+    }
+
+    /**
+     * Forgets all fixtures, because their body got destroyed as a whole.
+     */
+    public void clear() {
+        fixtures.clear();
+        fixturePolygons.clear();
+        fixtureVertexCounts.clear();
+    }
+
+    public int size() {
+        return fixtures.size;
+    }
+
+    /**
+     * Finds the index of an unmatched polygon that has the same vertices, independent of the
+     * vertex the polygon starts with.
+     */
+    private static int findPolygon(FloatArray polygons, IntArray vertexCounts,
+                                   float[] polygon, int offset, int length) {
+        float[] items = polygons.items;
+        for (int p = 0; p < vertexCounts.size; ++p) {
+            if (tmpMatchedPolygons.get(p) || 2 * vertexCounts.get(p) != length) continue;
+
+            int base = tmpPolygonOffsets.get(p);
+            for (int rotation = 0; rotation < length; rotation += 2) {
+                boolean same = true;
+                for (int k = 0; k < length && same; ++k) {
+                    same = items[base + (k + rotation) % length] == polygon[offset + k];
+                }
+                if (same) {
+                    return p;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static PolygonShape getSharedShape() {
+        if (sharedShape == null) {
+            sharedShape = new PolygonShape();
+        }
+        return sharedShape;
+    }
+}
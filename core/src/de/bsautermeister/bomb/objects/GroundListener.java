@@ -0,0 +1,38 @@
+package de.bsautermeister.bomb.objects;
+
+/**
+ * Listener of the changes of the {@link Ground}, so that caches of the ground can be invalidated
+ * precisely instead of being recomputed as a whole. Each change carries the rectangle of the
+ * grid positions it affected and the version of the ground after the change, which increases
+ * with each change. The grid positions are counted from the left and from the top of the ground,
+ * like the surface queries of the ground, where the border grid positions that are shared by
+ * neighboring fragments are counted once. The rectangles include both bounds.
+ * <p>
+ * The changes are published on the main thread, and must not modify the ground.
+ */
+public interface GroundListener {
+
+    /**
+     * Called once per flush for each fragment that got carved by the impacts since the last
+     * flush, with the bounds of the removed grid positions.
+     */
+    void fragmentCarved(int row, int col, int minCellX, int minCellY, int maxCellX, int maxCellY, long version);
+
+    /**
+     * Called when a fragment does not have any geometry left and got removed from the ground,
+     * with the bounds of the whole fragment.
+     */
+    void fragmentEmptied(int row, int col, int minCellX, int minCellY, int maxCellX, int maxCellY, long version);
+
+    /**
+     * Called when a new row of solid fragments got added below the ground, with the bounds of
+     * the whole row.
+     */
+    void rowAdded(int row, int minCellX, int minCellY, int maxCellX, int maxCellY, long version);
+
+    /**
+     * Called when a row got evicted from the physics world, with the bounds of the whole row.
+     * Its data is retained, and the row gets restored when it is needed again.
+     */
+    void rowEvicted(int row, int minCellX, int minCellY, int maxCellX, int maxCellY, long version);
+}
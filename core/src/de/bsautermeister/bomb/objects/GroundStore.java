@@ -0,0 +1,198 @@
+package de.bsautermeister.bomb.objects;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import de.bsautermeister.bomb.Cfg;
+import de.bsautermeister.bomb.utils.ArrayUtils;
+
+/**
+ * Compact storage of the grid data of evicted ground rows outside of the Java heap, so that the
+ * heap does not grow with the depth the player has dug. Each slot of a row is a record of fixed
+ * size, which consists of its kind followed by the grid columns. The rows are stored in segments
+ * that are either memory mapped from a spill file, which lets the operating system page out the
+ * rows that are not needed, or allocated as direct buffers when there is no spill file.
+ */
+public class GroundStore {
+
+    private static final Logger LOG = new Logger(GroundStore.class.getSimpleName(), Cfg.LOG_LEVEL);
+
+    public static final byte EMPTY = 0;
+    public static final byte SOLID = 1;
+    public static final byte CARVED = 2;
+
+    private static final int ROWS_PER_SEGMENT = 64;
+
+    private final int numCols;
+    private final int resolution;
+    private final long fullColumn;
+    private final int slotBytes;
+    private final int segmentBytes;
+
+    private final Array<ByteBuffer> segments = new Array<>();
+    private final File spillFile;
+    private RandomAccessFile file;
+    private FileChannel channel;
+
+    /**
+     * Creates a store for rows of the given number of columns, whose rows are spilled to the
+     * given file, or kept in direct buffers when the file is null.
+     */
+    public GroundStore(int numCols, int resolution, File spillFile) {
+        if (resolution > FragmentData.MAX_RESOLUTION) {
+            throw new IllegalArgumentException("Resolution must not exceed " + FragmentData.MAX_RESOLUTION + ".");
+        }
+        this.numCols = numCols;
+        this.resolution = resolution;
+        this.fullColumn = ArrayUtils.lowBits(resolution);
+        this.slotBytes = 1 + resolution * (Long.SIZE / Byte.SIZE);
+        this.segmentBytes = ROWS_PER_SEGMENT * numCols * slotBytes;
+        this.spillFile = spillFile;
+        if (spillFile != null) {
+            try {
+                file = new RandomAccessFile(spillFile, "rw");
+                channel = file.getChannel();
+            } catch (IOException e) {
+                throw new GdxRuntimeException("Failed to open ground spill file: " + spillFile, e);
+            }
+        }
+    }
+
+    public void writeEmpty(int row, int col) {
+        ByteBuffer buffer = getSegment(row);
+        buffer.put(getOffset(row, col), EMPTY);
+    }
+
+    public void writeSolid(int row, int col) {
+        ByteBuffer buffer = getSegment(row);
+        buffer.put(getOffset(row, col), SOLID);
+    }
+
+    /**
+     * Writes the grid columns of a carved slot, whose resolution has to match the store.
+     */
+    public void writeColumns(int row, int col, FragmentData data) {
+        if (data.getResolution() != resolution) {
+            throw new IllegalArgumentException("Resolution " + data.getResolution()
+                    + " does not match the resolution " + resolution + " of the store.");
+        }
+        ByteBuffer buffer = getSegment(row);
+        int offset = getOffset(row, col);
+        buffer.put(offset, CARVED);
+        offset++;
+        for (int i = 0; i < resolution; ++i) {
+            buffer.putLong(offset, data.getColumn(i));
+            offset += Long.SIZE / Byte.SIZE;
+        }
+    }
+
+    /**
+     * Gets the kind of the slot, which is {@link #EMPTY} for rows that have not been written yet.
+     */
+    public byte getKind(int row, int col) {
+        if (row / ROWS_PER_SEGMENT >= segments.size) {
+            return EMPTY;
+        }
+        return getSegment(row).get(getOffset(row, col));
+    }
+
+    /**
+     * Reads the grid columns of a carved slot into a new array.
+     */
+    public long[] readColumns(int row, int col) {
+        ByteBuffer buffer = getSegment(row);
+        int offset = getOffset(row, col);
+        if (buffer.get(offset) != CARVED) {
+            throw new IllegalStateException("Slot " + row + "," + col + " is not carved.");
+        }
+        offset++;
+        long[] columns = new long[resolution];
+        for (int i = 0; i < resolution; ++i) {
+            columns[i] = buffer.getLong(offset);
+            offset += Long.SIZE / Byte.SIZE;
+        }
+        return columns;
+    }
+
+    /**
+     * Reads a single grid column of a slot of any kind without allocating, which is empty for
+     * empty slots and full for solid slots.
+     */
+    public long readColumn(int row, int col, int i) {
+        byte kind = getKind(row, col);
+        if (kind == EMPTY) {
+            return 0L;
+        }
+        if (kind == SOLID) {
+            return fullColumn;
+        }
+        return getSegment(row).getLong(getOffset(row, col) + 1 + i * (Long.SIZE / Byte.SIZE));
+    }
+
+    private int getOffset(int row, int col) {
+        return ((row % ROWS_PER_SEGMENT) * numCols + col) * slotBytes;
+    }
+
+    private ByteBuffer getSegment(int row) {
+        int segment = row / ROWS_PER_SEGMENT;
+        while (segments.size <= segment) {
+            segments.add(createSegment(segments.size));
+        }
+        return segments.get(segment);
+    }
+
+    private ByteBuffer createSegment(int segment) {
+        ByteBuffer buffer;
+        if (channel != null) {
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, (long) segment * segmentBytes, segmentBytes);
+            } catch (IOException e) {
+                throw new GdxRuntimeException("Failed to map ground spill file.", e);
+            }
+        } else {
+            buffer = ByteBuffer.allocateDirect(segmentBytes);
+        }
+        return buffer.order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Gets the number of bytes of all segments, which are outside of the Java heap.
+     */
+    public long getCapacityBytes() {
+        return (long) segments.size * segmentBytes;
+    }
+
+    public boolean isSpilled() {
+        return channel != null;
+    }
+
+    /**
+     * Releases and deletes the spill file. The mapped segments stay valid until they get garbage
+     * collected, but must not be used any longer. Some platforms, such as Windows, refuse to
+     * delete a file while it is still mapped, in which case it gets deleted on exit instead.
+     */
+    public void dispose() {
+        segments.clear();
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                // nothing left to do about it
+            }
+            file = null;
+            channel = null;
+            if (!spillFile.delete() && spillFile.exists()) {
+                spillFile.deleteOnExit();
+                LOG.error("Failed to delete ground spill file, retrying on exit: " + spillFile);
+            }
+        }
+    }
+}
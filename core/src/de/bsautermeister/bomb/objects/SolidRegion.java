@@ -0,0 +1,73 @@
+package de.bsautermeister.bomb.objects;
+
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.physics.box2d.World;
+
+/**
+ * Rectangular region of solid fragments in the rows [minRow, maxRow] and the columns
+ * [minCol, maxCol], which is covered by a single box body instead of a body per fragment.
+ */
+public class SolidRegion {
+
+    private static final BodyDef BODY_DEF = new BodyDef();
+    static {
+        BODY_DEF.type = BodyDef.BodyType.StaticBody;
+    }
+
+    private final int minRow;
+    private final int maxRow;
+    private final int minCol;
+    private final int maxCol;
+
+    private final Body body;
+
+    public SolidRegion(World world, int minRow, int maxRow, int minCol, int maxCol, float size) {
+        this.minRow = minRow;
+        this.maxRow = maxRow;
+        this.minCol = minCol;
+        this.maxCol = maxCol;
+        this.body = createBody(world, size);
+    }
+
+    private Body createBody(World world, float size) {
+        float halfWidth = (maxCol - minCol + 1) * size / 2f;
+        float halfHeight = (maxRow - minRow + 1) * size / 2f;
+        BODY_DEF.position.set(minCol * size + halfWidth, -minRow * size - halfHeight);
+        Body body = world.createBody(BODY_DEF);
+
+        PolygonShape shape = new PolygonShape();
+        shape.setAsBox(halfWidth, halfHeight);
+        Fragment.FIXTURE_DEF.shape = shape;
+        body.createFixture(Fragment.FIXTURE_DEF);
+        Fragment.FIXTURE_DEF.shape = null;
+        shape.dispose();
+        return body;
+    }
+
+    public void destroy(World world) {
+        world.destroyBody(body);
+    }
+
+    public boolean overlaps(int minRow, int maxRow, int minCol, int maxCol) {
+        return this.minRow <= maxRow && minRow <= this.maxRow
+                && this.minCol <= maxCol && minCol <= this.maxCol;
+    }
+
+    public int getMinRow() {
+        return minRow;
+    }
+
+    public int getMaxRow() {
+        return maxRow;
+    }
+
+    public int getMinCol() {
+        return minCol;
+    }
+
+    public int getMaxCol() {
+        return maxCol;
+    }
+}
@@ -1,15 +1,12 @@
 package de.bsautermeister.bomb.screens.game;
 
 import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.physics.box2d.Fixture;
-import com.badlogic.gdx.physics.box2d.RayCastCallback;
-import com.badlogic.gdx.physics.box2d.World;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 
 import de.bsautermeister.bomb.Cfg;
-import de.bsautermeister.bomb.contact.Bits;
+import de.bsautermeister.bomb.objects.Ground;
 import de.bsautermeister.bomb.serializers.KryoExternalSerializer;
 
 public class AirStrikeManager implements KryoExternalSerializer {
@@ -17,7 +14,6 @@ public class AirStrikeManager implements KryoExternalSerializer {
     private final static Vector2 VELOCITY_LEFT = new Vector2(-2f, -6f);
     private final static float START_OFFSET_FACTOR = 2.5f;
 
-    private final World world;
     private final Vector2 resultStart = new Vector2();
     private final Vector2 resultTarget = new Vector2();
     private boolean ready = false;
@@ -28,58 +24,74 @@ public class AirStrikeManager implements KryoExternalSerializer {
     private final Vector2 requestVelocity = new Vector2();
     private final Vector2 requestedTarget = new Vector2();
 
-    private final RayCastCallback rayCastCallback = new RayCastCallback() {
-        @Override
-        public float reportRayFixture(Fixture fixture, Vector2 point, Vector2 normal, float fraction) {
-            if (fixture.getFilterData().categoryBits != Bits.GROUND) {
-                return -1f;
-            }
-            if (isWithinWorldX(point)) {
-                ready = true;
-                resultTarget.set(point);
-                float factor = START_OFFSET_FACTOR;
-                resultStart
-                        .set(point)
-                        .sub(requestVelocity.x * factor * fraction, requestVelocity.y * factor * fraction);
-                return fraction;
-            }
-            return -1f;
-        }
-    };
-
-    public AirStrikeManager(World world) {
-        this.world = world;
-    }
-
     private final Vector2 tmpTarget = new Vector2();
-    void update(float delta) {
+    void update(float delta, Ground ground) {
         if (requestIndex == 0 && requestTimer <= REQUEST_TIME) {
             requestIndex++;
             tmpTarget
                     .set(requestedTarget)
                     .add(isWorldLeft(requestedTarget) ? 1f : -1f, 0f)
                     .add(requestVelocity);
-            world.rayCast(rayCastCallback, getStart(tmpTarget, requestVelocity), tmpTarget);
+            findTarget(ground, getStart(tmpTarget, requestVelocity), tmpTarget);
         } else if (requestIndex == 1 && requestTimer <= REQUEST_TIME / 2) {
             requestIndex++;
             tmpTarget
                     .set(requestedTarget)
                     .add(requestVelocity);
-            world.rayCast(rayCastCallback, getStart(tmpTarget, requestVelocity), tmpTarget);
+            findTarget(ground, getStart(tmpTarget, requestVelocity), tmpTarget);
         } else if (requestIndex == 2 && requestTimer <= 0f) {
             requestIndex = -1;
             tmpTarget
                     .set(requestedTarget)
                     .add(isWorldLeft(requestedTarget) ? -1f : 1f, 0f)
                     .add(requestVelocity);
-            world.rayCast(rayCastCallback, getStart(tmpTarget, requestVelocity), tmpTarget);
+            findTarget(ground, getStart(tmpTarget, requestVelocity), tmpTarget);
         }
 
         requestTimer -= delta;
     }
 
-    private boolean isWithinWorldX(Vector2 position) {
-        return position.x > 0f && position.x < Cfg.World.WIDTH_PPM;
+    private final Vector2 tmpPoint = new Vector2();
+    /**
+     * Finds the first point along the ray where it gets below the ground surface, by sampling the
+     * surface heightfield of the ground once per grid column that the ray passes. This does not
+     * need the ground to have any bodies in the physics world.
+     */
+    private void findTarget(Ground ground, Vector2 start, Vector2 end) {
+        float dx = end.x - start.x;
+        float dy = end.y - start.y;
+        int steps = Math.max(1, (int) Math.ceil(Math.abs(dx) / ground.getCellSize()));
+        float previousFraction = 0f;
+        float previousHeight = Float.NaN;
+        for (int k = 0; k <= steps; ++k) {
+            float fraction = (float) k / steps;
+            float x = start.x + dx * fraction;
+            if (!isWithinWorldX(x)) {
+                previousHeight = Float.NaN;
+                continue;
+            }
+
+            float height = start.y + dy * fraction - ground.getSurfaceY(x);
+            if (height <= 0f) {
+                // interpolate the crossing between the previous sample and this one
+                float hitFraction = Float.isNaN(previousHeight) ? fraction
+                        : previousFraction + (fraction - previousFraction) * previousHeight / (previousHeight - height);
+                tmpPoint.set(start).add(dx * hitFraction, dy * hitFraction);
+                ready = true;
+                resultTarget.set(tmpPoint);
+                float factor = START_OFFSET_FACTOR;
+                resultStart
+                        .set(tmpPoint)
+                        .sub(requestVelocity.x * factor * hitFraction, requestVelocity.y * factor * hitFraction);
+                return;
+            }
+            previousFraction = fraction;
+            previousHeight = height;
+        }
+    }
+
+    private boolean isWithinWorldX(float x) {
+        return x > 0f && x < Cfg.World.WIDTH_PPM;
     }
 
     private boolean isWorldLeft(Vector2 position) {
@@ -114,6 +126,15 @@ public class AirStrikeManager implements KryoExternalSerializer {
         return  tmpStart;
     }
 
+    /**
+     * Drops any pending request and target.
+     */
+    public void reset() {
+        ready = false;
+        requestTimer = 0f;
+        requestIndex = -1;
+    }
+
     @Override
     public void write(Kryo kryo, Output output) {
         output.writeBoolean(ready);
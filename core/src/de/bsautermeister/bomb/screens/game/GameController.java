@@ -77,6 +77,12 @@ public class GameController implements Disposable {
 
     private static final Logger LOG = new Logger(GameController.class.getSimpleName(), Cfg.LOG_LEVEL);
 
+    /**
+     * Leading word of saved games, which is a NaN as a float, so that it cannot be mistaken for
+     * the game time that saved games without a version started with.
+     */
+    private static final int SAVE_GAME_MAGIC = 0xFFB0B0B0;
+
     private final BombGame game;
     private ShakableCamera2D camera;
     private final Viewport viewport;
@@ -207,7 +213,7 @@ public class GameController implements Disposable {
         heartbeatSound = new LoopSound(assetManager.get(Assets.Sounds.HEARTBEAT));
         hitSound = assetManager.get(Assets.Sounds.HIT);
 
-        airStrikeManager = new AirStrikeManager(world);
+        airStrikeManager = new AirStrikeManager();
 
         tutorialController = new TutorialController();
         if (game.getGameStats().hasTutorialCompleted()) {
@@ -269,9 +275,7 @@ public class GameController implements Disposable {
         }
 
         if (!game.getMusicPlayer().isSelected(Assets.Music.GAME_SONG)) {
-            game.getMusicPlayer().selectSmoothLoopedMusic(Assets.Music.GAME_SONG, 85f);
-            game.getMusicPlayer().setVolume(MusicPlayer.MAX_VOLUME, true);
-            game.getMusicPlayer().playFromBeginning();
+            playGameMusicFromBeginning();
         }
 
         if (state == null) {
@@ -321,6 +325,12 @@ public class GameController implements Disposable {
         scoreEntries.addAll(gameScores.getAllScoreEntries(5));
     }
 
+    private void playGameMusicFromBeginning() {
+        game.getMusicPlayer().selectSmoothLoopedMusic(Assets.Music.GAME_SONG, 85f);
+        game.getMusicPlayer().setVolume(MusicPlayer.MAX_VOLUME, true);
+        game.getMusicPlayer().playFromBeginning();
+    }
+
     private void createWorldBoundsWallBodies(World world) {
         FixtureDef fixtureDef = new FixtureDef();
         fixtureDef.density = 1f;
@@ -471,7 +481,7 @@ public class GameController implements Disposable {
             airStrikeManager.request(playerPosition);
         }
 
-        airStrikeManager.update(delta);
+        airStrikeManager.update(delta, ground);
 
         if (airStrikeManager.isReady()) {
             AirStrikeManager.EmitInfo emitInfo = airStrikeManager.getTargetAndReset();
@@ -527,6 +537,9 @@ public class GameController implements Disposable {
 
     private static float[] outRemovedVertices = new float[32 * 2 * Cfg.Ground.FRAGMENT_RESOLUTION * Cfg.Ground.FRAGMENT_RESOLUTION];
     private void updateEnvironment(float delta) {
+        ground.beginFrame();
+        keepGroundAlive();
+        requestGroundRows();
         ground.update();
 
         for (int i = bombs.size - 1; i >= 0; --i) {
@@ -608,6 +621,52 @@ public class GameController implements Disposable {
                 activeBlastEffects.removeIndex(i);
             }
         }
+
+        ground.flushImpacts();
+    }
+
+    /**
+     * Keeps the ground rows alive that are in view or that could be reached by the player or
+     * any bomb, so that only the rows far away from any of these get evicted. The rows close to
+     * any of these keep their full collision geometry, while the others become coarse.
+     */
+    private void keepGroundAlive() {
+        float cameraY = camera.getPosition().y;
+        float halfViewportHeight = viewport.getWorldHeight() / 2f;
+        ground.keepAlive(
+                cameraY + halfViewportHeight + Cfg.Ground.KEEP_ALIVE_DISTANCE_PPM,
+                cameraY - halfViewportHeight - Cfg.Ground.KEEP_ALIVE_DISTANCE_PPM);
+        ground.keepDetailed(
+                cameraY + halfViewportHeight + Cfg.Ground.DETAIL_DISTANCE_PPM,
+                cameraY - halfViewportHeight - Cfg.Ground.DETAIL_DISTANCE_PPM);
+
+        Vector2 playerPosition = player.getPosition();
+        ground.keepAlive(
+                playerPosition.y + Cfg.Ground.KEEP_ALIVE_DISTANCE_PPM,
+                playerPosition.y - Cfg.Ground.KEEP_ALIVE_DISTANCE_PPM);
+        ground.keepDetailed(
+                playerPosition.y + Cfg.Ground.DETAIL_DISTANCE_PPM,
+                playerPosition.y - Cfg.Ground.DETAIL_DISTANCE_PPM);
+
+        for (Bomb bomb : bombs) {
+            Vector2 bombPosition = bomb.getPosition();
+            float lookahead = Math.abs(bomb.getLinearVelocity().y) * Cfg.Ground.KEEP_ALIVE_BOMB_LOOKAHEAD_SECONDS;
+            float topY = bombPosition.y + Cfg.Ground.KEEP_ALIVE_BOMB_DISTANCE_PPM + lookahead;
+            float bottomY = bombPosition.y - Cfg.Ground.KEEP_ALIVE_BOMB_DISTANCE_PPM - lookahead;
+            ground.keepAlive(topY, bottomY);
+            ground.keepDetailed(topY, bottomY);
+        }
+    }
+
+    /**
+     * Requests the ground rows ahead of the player depending on its depth and falling speed, so
+     * that they get generated gradually before the player digs into them.
+     */
+    private void requestGroundRows() {
+        Vector2 playerPosition = player.getPosition();
+        float fallingSpeed = Math.max(0f, -player.getLinearVelocity().y);
+        ground.requestRows(playerPosition.y - Cfg.Ground.ROW_LOOKAHEAD_DISTANCE_PPM
+                - fallingSpeed * Cfg.Ground.ROW_LOOKAHEAD_SECONDS);
     }
 
     private void updateCamera(float delta) {
@@ -662,6 +721,12 @@ public class GameController implements Disposable {
             if (Gdx.input.isKeyJustPressed(Input.Keys.E)) {
                 debugEmitExplosion = true;
             }
+            if (Gdx.input.isKeyJustPressed(Input.Keys.O)) {
+                FragmentData.OutlineEngine engine = FragmentData.getOutlineEngine() == FragmentData.OutlineEngine.CLUSTER_TRACING
+                        ? FragmentData.OutlineEngine.MARCHING_SQUARES : FragmentData.OutlineEngine.CLUSTER_TRACING;
+                FragmentData.setOutlineEngine(engine);
+                LOG.debug("Outline engine: " + engine);
+            }
         }
 
         if (debugDropBomb) {
@@ -669,6 +734,7 @@ public class GameController implements Disposable {
         }
         if (debugEmitExplosion) {
             ground.impact(outRemovedVertices, player.getPosition(), player.getRadius() * 3f);
+            ground.flushImpacts();
         }
 
         player.control(upPressed, leftPressed, rightPressed);
@@ -691,6 +757,8 @@ public class GameController implements Disposable {
         try {
             File file = game.getGameFile();
             Output output = new Output(new FileOutputStream(file));
+            output.writeInt(SAVE_GAME_MAGIC);
+            output.writeInt(Cfg.SAVE_GAME_VERSION, true);
             output.writeFloat(gameTime);
             output.writeFloat(airStrikeUnlockTimer);
             kryo.writeObject(output, state);
@@ -718,9 +786,13 @@ public class GameController implements Disposable {
             return;
         }
 
+        com.esotericsoftware.kryo.io.Input input = null;
         try {
-            com.esotericsoftware.kryo.io.Input input = new com.esotericsoftware.kryo.io.Input(
-                    new FileInputStream(file));
+            input = new com.esotericsoftware.kryo.io.Input(new FileInputStream(file));
+            if (input.readInt() != SAVE_GAME_MAGIC || input.readInt(true) != Cfg.SAVE_GAME_VERSION) {
+                LOG.info("Discard saved game of an incompatible version");
+                return;
+            }
             gameTime = input.readFloat();
             airStrikeUnlockTimer = input.readFloat();
             state = kryo.readObject(input, GameObjectState.class);
@@ -738,15 +810,55 @@ public class GameController implements Disposable {
             canRevive = input.readBoolean();
             unlockedExplorer = input.readBoolean();
             unlockedHero = input.readBoolean();
-            input.close();
         } catch (FileNotFoundException e) {
             LOG.error("Failed to load game.", e);
+        } catch (RuntimeException e) {
+            // the saved game gets deleted after loading, so that a new game is started instead
+            LOG.error("Discard saved game that could not be read.", e);
+            discardLoadedGame();
+        } finally {
+            if (input != null) {
+                input.close();
+            }
+        }
+    }
+
+    /**
+     * Drops everything a partially read saved game has set up, so that a new game can be started
+     * on top. The camera is moved to the new player once it gets created.
+     */
+    private void discardLoadedGame() {
+        // the bodies of the player, the ground and the bombs that have been read so far
+        Array<Body> bodies = new Array<>(world.getBodyCount());
+        world.getBodies(bodies);
+        for (Body body : bodies) {
+            world.destroyBody(body);
         }
+        createWorldBoundsWallBodies(world);
+
+        if (ground != null) {
+            ground.dispose();
+            ground = null;
+        }
+        player = null;
+        state = null;
+        gameTime = 0f;
+        airStrikeUnlockTimer = 0f;
+        activeBlastEffects.clear();
+        bombs.clear();
+        airStrikeTargets.clear();
+        airStrikeManager.reset();
+        playGameMusicFromBeginning();
+        canRevive = true;
+        unlockedExplorer = false;
+        unlockedHero = false;
     }
 
     @Override
     public void dispose() {
-
+        if (ground != null) {
+            ground.dispose();
+        }
     }
 
     private void handlePauseInput() {
@@ -22,12 +22,12 @@ import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.physics.box2d.Box2DDebugRenderer;
-import com.badlogic.gdx.physics.box2d.Fixture;
-import com.badlogic.gdx.physics.box2d.PolygonShape;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
 import com.badlogic.gdx.utils.Align;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.StringBuilder;
 import com.badlogic.gdx.utils.viewport.StretchViewport;
 import com.badlogic.gdx.utils.viewport.Viewport;
 
@@ -56,7 +56,10 @@ import de.bsautermeister.bomb.utils.PolygonUtils;
 
 public class GameRenderer implements Disposable {
 
-    private static final short[] TRIANGULATION_IDENTITY = new short[] { 2, 1, 0 };
+    /**
+     * Triangulations of convex polygons by their vertex count, which is at most 8 in Box2D.
+     */
+    private static final short[][] FAN_TRIANGULATIONS = createFanTriangulations(8);
     private static final float[] POLYGON_BUFFER = new float[64];
     private static final float POLYGON_ZOOM = 1.1f;
 
@@ -81,6 +84,7 @@ public class GameRenderer implements Disposable {
     private final Overlays<GameState> overlays;
 
     private final BitmapFont markerFont;
+    private final StringBuilder debugText = new StringBuilder();
 
     private final TutorialRenderer tutorialRenderer;
 
@@ -287,6 +291,9 @@ public class GameRenderer implements Disposable {
         uiViewport.apply();
         batch.setProjectionMatrix(hud.getCamera().combined);
         renderHud(delta);
+        if (Cfg.DEBUG_MODE) {
+            renderGroundStats();
+        }
         if (!overlays.isVisible()) {
             shapeRenderer.setProjectionMatrix(hud.getCamera().combined);
             tutorialRenderer.render(shapeRenderer, batch);
@@ -305,6 +312,34 @@ public class GameRenderer implements Disposable {
         hud.render(delta);
     }
 
+    /**
+     * Renders the counters of the ground in the current frame and the state of its rows.
+     */
+    private void renderGroundStats() {
+        Ground ground = controller.getGround();
+        int numRows = ground.getFragments().size;
+        int numCoarseRows = 0;
+        for (int row = 0; row < numRows; ++row) {
+            if (ground.isRowCoarse(row)) {
+                numCoarseRows++;
+            }
+        }
+        debugText.setLength(0);
+        debugText.append("carves: ").append(ground.getFrameCarves())
+                .append("  rebuilds: ").append(ground.getFrameRebuilds())
+                .append("  saved: ").append(ground.getFrameRebuildsSaved())
+                .append("  chunks: ").append(ground.getFrameChunkRebuilds())
+                .append("  detail: ").append(ground.getFrameDetailChanges())
+                .append("\nrows: ").append(numRows)
+                .append("  coarse: ").append(numCoarseRows)
+                .append("  store: ").append(ground.getStoreCapacityBytes() / 1024L).append(" KiB");
+
+        batch.begin();
+        markerFont.setColor(Color.WHITE);
+        markerFont.draw(batch, debugText, 8f, Cfg.Ui.HEIGHT - 8f);
+        batch.end();
+    }
+
     private void drawMarkerText(Camera2D camera, float depth, String text, Color color) {
         tmpProjection.set(0f, -depth, 0f);
         camera.getGdxCamera().project(
@@ -412,41 +447,77 @@ public class GameRenderer implements Disposable {
         }
     }
 
-    private static Vector2 tmpVertex = new Vector2();
-    private static float[] tmpVerticesArray = new float[6];
+    private static float[][] tmpVerticesArrays = new float[][] {
+            null, null, null, new float[6], new float[8], new float[10], new float[12], new float[14], new float[16]
+    };
     private void renderGround(PolygonSpriteBatch polygonBatch) {
         Ground ground = controller.getGround();
 
         for (Array<Fragment> fragmentRows : ground.getFragments()) {
             for (Fragment fragment : fragmentRows) {
-                if (fragment.isEmpty()) continue;
+                if (fragment == null || fragment.isEmpty() || fragment.isArchived()) continue;
 
                 TextureRegion textureRegion = fragment.getBottomY() >= -1 ? surfaceRegion : groundRegion;
                 float texWidth = textureRegion.getRegionWidth();
                 float texHeight = textureRegion.getRegionHeight();
 
-                for (Fixture fixture : fragment.getBody().getFixtureList()) {
-                    PolygonShape polygon = (PolygonShape) fixture.getShape();
-                    polygon.getVertex(0, tmpVertex);
-                    tmpVerticesArray[0] = tmpVertex.x * texWidth;
-                    tmpVerticesArray[1] = tmpVertex.y * texHeight;
-                    polygon.getVertex(1, tmpVertex);
-                    tmpVerticesArray[2] = tmpVertex.x * texWidth;
-                    tmpVerticesArray[3] = tmpVertex.y * texHeight;
-                    polygon.getVertex(2, tmpVertex);
-                    tmpVerticesArray[4] = tmpVertex.x * texWidth;
-                    tmpVerticesArray[5] = tmpVertex.y * texHeight;
-
-                    PolygonRegion polyReg = new PolygonRegion(textureRegion, tmpVerticesArray, TRIANGULATION_IDENTITY);
-                    PolygonSprite polySprite = new PolygonSprite(polyReg);
-                    polySprite.setPosition(fragment.getLeftX(), fragment.getBottomY());
-                    // we pick a size slightly bigger than 1, because otherwise there are gaps
-                    // as visual glitches visible between each ground fragment from time to time
-                    polySprite.setSize(1.001f, 1.001f);
-                    polySprite.draw(polygonBatch);
+                if (fragment.isSolid()) {
+                    // solid fragments might not have a body, because they are merged into a region
+                    float[] tmpVerticesArray = tmpVerticesArrays[4];
+                    tmpVerticesArray[0] = 0f;
+                    tmpVerticesArray[1] = 0f;
+                    tmpVerticesArray[2] = texWidth;
+                    tmpVerticesArray[3] = 0f;
+                    tmpVerticesArray[4] = texWidth;
+                    tmpVerticesArray[5] = texHeight;
+                    tmpVerticesArray[6] = 0f;
+                    tmpVerticesArray[7] = texHeight;
+                    drawGroundPolygon(polygonBatch, fragment, textureRegion, tmpVerticesArray, 4);
+                    continue;
                 }
+
+                // the render polygons keep the full detail, unlike the simplified fixtures
+                float[] polygons = fragment.getRenderPolygons().items;
+                IntArray vertexCounts = fragment.getRenderVertexCounts();
+                int offset = 0;
+                for (int p = 0; p < vertexCounts.size; ++p) {
+                    int vertexCount = vertexCounts.get(p);
+                    float[] tmpVerticesArray = tmpVerticesArrays[vertexCount];
+                    for (int i = 0; i < vertexCount; ++i) {
+                        tmpVerticesArray[2 * i] = polygons[offset + 2 * i] * texWidth;
+                        tmpVerticesArray[2 * i + 1] = polygons[offset + 2 * i + 1] * texHeight;
+                    }
+                    offset += 2 * vertexCount;
+
+                    drawGroundPolygon(polygonBatch, fragment, textureRegion, tmpVerticesArray, vertexCount);
+                }
+            }
+        }
+    }
+
+    private static void drawGroundPolygon(PolygonSpriteBatch polygonBatch, Fragment fragment, TextureRegion textureRegion,
+                                          float[] vertices, int vertexCount) {
+        PolygonRegion polyReg = new PolygonRegion(textureRegion, vertices, FAN_TRIANGULATIONS[vertexCount]);
+        PolygonSprite polySprite = new PolygonSprite(polyReg);
+        polySprite.setPosition(fragment.getLeftX(), fragment.getBottomY());
+        // we pick a size slightly bigger than 1, because otherwise there are gaps
+        // as visual glitches visible between each ground fragment from time to time
+        polySprite.setSize(1.001f, 1.001f);
+        polySprite.draw(polygonBatch);
+    }
+
+    private static short[][] createFanTriangulations(int maxVertices) {
+        short[][] result = new short[maxVertices + 1][];
+        for (int count = 3; count <= maxVertices; ++count) {
+            short[] triangles = new short[3 * (count - 2)];
+            for (int t = 0; t < count - 2; ++t) {
+                triangles[3 * t] = (short) (t + 2);
+                triangles[3 * t + 1] = (short) (t + 1);
+                triangles[3 * t + 2] = 0;
             }
+            result[count] = triangles;
         }
+        return result;
     }
 
     public void resize(int width, int height) {
@@ -22,6 +22,55 @@ public class ArrayUtils {
         return result;
     }
 
+    /**
+     * Gets a word with the lowest count bits set.
+     */
+    public static long lowBits(int count) {
+        return count >= Long.SIZE ? -1L : (1L << count) - 1L;
+    }
+
+    public static void fillBits(long[] words, int count) {
+        Arrays.fill(words, lowBits(count));
+    }
+
+    /**
+     * Packs each slice of the array into a single word, where bit j of word i is set when
+     * array[i][j] is true.
+     */
+    public static long[] toBits(boolean[][] array) {
+        long[] result = new long[array.length];
+        for (int i = 0; i < array.length; ++i) {
+            long word = 0L;
+            for (int j = 0; j < array[i].length; ++j) {
+                if (array[i][j]) {
+                    word |= 1L << j;
+                }
+            }
+            result[i] = word;
+        }
+        return result;
+    }
+
+    public static boolean[][] fromBits(long[] words, int count) {
+        boolean[][] result = new boolean[words.length][count];
+        for (int i = 0; i < words.length; ++i) {
+            for (int j = 0; j < count; ++j) {
+                result[i][j] = (words[i] & (1L << j)) != 0;
+            }
+        }
+        return result;
+    }
+
+    public static int[][] copyToInt(long[] words, int count, int trueValue, int falseValue) {
+        int[][] result = new int[words.length][count];
+        for (int i = 0; i < words.length; ++i) {
+            for (int j = 0; j < count; ++j) {
+                result[i][j] = (words[i] & (1L << j)) != 0 ? trueValue : falseValue;
+            }
+        }
+        return result;
+    }
+
     public static void replace2D(int[][] array, int replace, int value) {
         for (int[] slice : array) {
             for (int i = 0; i < slice.length; ++i) {
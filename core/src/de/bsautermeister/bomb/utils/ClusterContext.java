@@ -0,0 +1,180 @@
+package de.bsautermeister.bomb.utils;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+
+import java.util.Arrays;
+
+/**
+ * Caller-owned scratch buffers of {@link ClusterUtils}, which also hold the result of the last
+ * computation. Reusing a context avoids any allocations once its buffers have grown to the grid
+ * size. A context must not be shared between threads.
+ */
+public class ClusterContext {
+
+    /**
+     * Maximum number of released arrays that are kept per length.
+     */
+    private static final int MAX_FREE_ARRAYS = 64;
+
+    private int numRows;
+    private int numCols;
+
+    /**
+     * Labels of the grid positions in row-major order, which are either {@link ClusterUtils#EMPTY},
+     * {@link ClusterUtils#DEFINED} or the index of a cluster.
+     */
+    private int[] labels = new int[0];
+
+    /**
+     * Start positions of the clusters as pairs of i,j.
+     */
+    private final IntArray startPositions = new IntArray();
+
+    /**
+     * Explicit stack of the depth-first traversal, which has room for a frame per grid position.
+     */
+    private int[] stack = new int[0];
+
+    /**
+     * Released cell masks and outlines of clusters by their length, which are reused for the
+     * clusters of later computations.
+     */
+    private final IntMap<Array<long[]>> freeCells = new IntMap<>();
+    private final IntMap<Array<float[]>> freeOutlines = new IntMap<>();
+
+    /**
+     * Loads bit-packed grid data, where bit j of word i represents the grid position i,j.
+     */
+    public void load(long[] gridData, int resolution) {
+        resize(resolution, resolution);
+        for (int i = 0; i < resolution; ++i) {
+            long column = gridData[i];
+            int offset = i * resolution;
+            for (int j = 0; j < resolution; ++j) {
+                labels[offset + j] = (column & (1L << j)) != 0 ? ClusterUtils.DEFINED : ClusterUtils.EMPTY;
+            }
+        }
+    }
+
+    /**
+     * Loads the labels of the given grid data in shape [rows, cols].
+     */
+    public void load(int[][] data) {
+        resize(data.length, data.length > 0 ? data[0].length : 0);
+        for (int i = 0; i < numRows; ++i) {
+            System.arraycopy(data[i], 0, labels, i * numCols, numCols);
+        }
+    }
+
+    /**
+     * Copies the labels into the given grid data in shape [rows, cols].
+     */
+    public void copyTo(int[][] outData) {
+        for (int i = 0; i < numRows; ++i) {
+            System.arraycopy(labels, i * numCols, outData[i], 0, numCols);
+        }
+    }
+
+    private void resize(int numRows, int numCols) {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        if (labels.length < numRows * numCols) {
+            labels = new int[numRows * numCols];
+        }
+        startPositions.clear();
+    }
+
+    /**
+     * Obtains a cleared mask of the cells of a cluster with the given number of columns.
+     */
+    public long[] obtainCells(int length) {
+        Array<long[]> free = freeCells.get(length);
+        if (free == null || free.size == 0) {
+            return new long[length];
+        }
+        long[] cells = free.pop();
+        Arrays.fill(cells, 0L);
+        return cells;
+    }
+
+    public void freeCells(long[] cells) {
+        Array<long[]> free = freeCells.get(cells.length);
+        if (free == null) {
+            free = new Array<>(false, 16);
+            freeCells.put(cells.length, free);
+        }
+        if (free.size < MAX_FREE_ARRAYS) {
+            free.add(cells);
+        }
+    }
+
+    /**
+     * Obtains an outline of the given length, whose contents have to be overwritten.
+     */
+    public float[] obtainOutline(int length) {
+        Array<float[]> free = freeOutlines.get(length);
+        if (free == null || free.size == 0) {
+            return new float[length];
+        }
+        return free.pop();
+    }
+
+    public void freeOutline(float[] outline) {
+        Array<float[]> free = freeOutlines.get(outline.length);
+        if (free == null) {
+            free = new Array<>(false, 16);
+            freeOutlines.put(outline.length, free);
+        }
+        if (free.size < MAX_FREE_ARRAYS) {
+            free.add(outline);
+        }
+    }
+
+    int[] getStack() {
+        // each grid position is pushed at most once, because only marked positions descend
+        int required = (numRows * numCols + 1) * ClusterUtils.FRAME_SIZE;
+        if (stack.length < required) {
+            stack = new int[required];
+        }
+        return stack;
+    }
+
+    void addStartPosition(int i, int j) {
+        startPositions.add(i);
+        startPositions.add(j);
+    }
+
+    void setLabel(int i, int j, int label) {
+        labels[i * numCols + j] = label;
+    }
+
+    public int getLabel(int i, int j) {
+        return labels[i * numCols + j];
+    }
+
+    public boolean isInBounds(int i, int j) {
+        return i >= 0 && i < numRows && j >= 0 && j < numCols;
+    }
+
+    public int getCount() {
+        return startPositions.size / 2;
+    }
+
+    public int getStartI(int clusterIdx) {
+        return startPositions.get(2 * clusterIdx);
+    }
+
+    public int getStartJ(int clusterIdx) {
+        return startPositions.get(2 * clusterIdx + 1);
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public int getNumCols() {
+        return numCols;
+    }
+}
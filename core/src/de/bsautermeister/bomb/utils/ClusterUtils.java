@@ -2,6 +2,7 @@ package de.bsautermeister.bomb.utils;
 
 import com.badlogic.gdx.math.GridPoint2;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
 
 import de.bsautermeister.bomb.utils.result.ClusterResult;
 
@@ -10,18 +11,59 @@ public class ClusterUtils {
     public static final int EMPTY = -2;
     public static final int DEFINED = -1;
 
+    /**
+     * Layout of a frame on the explicit stack of {@link #markClusterDepthFirst}.
+     */
+    private static final int FRAME_I = 0;
+    private static final int FRAME_J = 1;
+    private static final int FRAME_DIRECTION = 2;
+    private static final int FRAME_STEP = 3;
+    private static final int FRAME_MARKED = 4;
+    static final int FRAME_SIZE = 5;
+
     private ClusterUtils() {}
 
     public static ClusterResult computeClusters(boolean[][] gridData) {
-        int[][] clusterData = ArrayUtils.copyToInt(gridData, DEFINED, EMPTY);
-        Array<GridPoint2> clusterStartPositions = new Array<>();
+        return computeClusters(ArrayUtils.copyToInt(gridData, DEFINED, EMPTY));
+    }
+
+    /**
+     * Computes the clusters of bit-packed grid data, where bit j of word i represents the grid
+     * position i,j.
+     */
+    public static ClusterResult computeClusters(long[] gridData, int resolution) {
+        return computeClusters(ArrayUtils.copyToInt(gridData, resolution, DEFINED, EMPTY));
+    }
 
+    /**
+     * Computes the clusters in place, where each grid position of the given data has to be either
+     * {@link #DEFINED} or {@link #EMPTY}.
+     */
+    public static ClusterResult computeClusters(int[][] clusterData) {
+        ClusterContext context = new ClusterContext();
+        context.load(clusterData);
+        computeClusters(context);
+        context.copyTo(clusterData);
+
+        Array<GridPoint2> clusterStartPositions = new Array<>(context.getCount());
+        for (int clusterIdx = 0; clusterIdx < context.getCount(); ++clusterIdx) {
+            clusterStartPositions.add(new GridPoint2(context.getStartI(clusterIdx), context.getStartJ(clusterIdx)));
+        }
+        return new ClusterResult(clusterStartPositions, clusterData);
+    }
+
+    /**
+     * Computes the clusters of the grid data loaded into the context, without allocating any
+     * memory once the buffers of the context are large enough. The labels and start positions
+     * of the clusters can be accessed through the context afterwards.
+     */
+    public static void computeClusters(ClusterContext context) {
         int clusterId = 0;
-        for (int i = 0; i < clusterData.length; ++i) {
-            for (int j = 0; j < clusterData[0].length; ++j) {
-                if (clusterData[i][j] == DEFINED) {
-                    if (markClusterDepthFirst(clusterData, clusterId, i, j, i, j - 1)) {
-                        clusterStartPositions.add(new GridPoint2(i, j));
+        for (int i = 0; i < context.getNumRows(); ++i) {
+            for (int j = 0; j < context.getNumCols(); ++j) {
+                if (context.getLabel(i, j) == DEFINED) {
+                    if (markClusterDepthFirst(context, clusterId, i, j, i, j - 1)) {
+                        context.addStartPosition(i, j);
                         clusterId++;
                     }
                 }
@@ -29,104 +71,227 @@ public class ClusterUtils {
         }
 
         // cleanup remaining grid points
-        ArrayUtils.replace2D(clusterData, DEFINED, EMPTY);
-
-        return new ClusterResult(clusterStartPositions, clusterData);
+        for (int i = 0; i < context.getNumRows(); ++i) {
+            for (int j = 0; j < context.getNumCols(); ++j) {
+                if (context.getLabel(i, j) == DEFINED) {
+                    context.setLabel(i, j, EMPTY);
+                }
+            }
+        }
     }
 
-    private static boolean markClusterDepthFirst(int[][] clusterData, int clusterId, int i, int j, int prevI, int prevJ) {
-        boolean marked = false;
-
-        if (clusterData[i][j] == clusterId) {
+    /**
+     * Marks the cluster depth-first using an explicit stack instead of recursion, so that the
+     * depth is not limited by the call stack for large grids. Each frame resumes scanning the
+     * neighbors clock-wise where it left off, which visits the grid positions in exactly the same
+     * order as the recursive traversal.
+     *
+     * @return whether the start position has been marked
+     */
+    private static boolean markClusterDepthFirst(ClusterContext context, int clusterId, int i, int j, int prevI, int prevJ) {
+        if (context.getLabel(i, j) == clusterId) {
             return false;
         }
 
-        int outerI = prevI;
-        int outerJ = prevJ;
-        for (int k = 0; k < 8 - 1; ++k) {
-            GridPoint2 next = GridUtils.getNextPosCWInner8(outerI, outerJ, i, j);
-            outerI = next.x;
-            outerJ = next.y;
-
-            if (GridUtils.isInBounds(clusterData, outerI, outerJ) && clusterData[outerI][outerJ] != EMPTY) {
-                if (GridUtils.hasConnectibleNeighborsLeftOrRight(clusterData, outerI, outerJ, i, j, EMPTY)) {
-                    marked = true;
-                    clusterData[i][j] = clusterId;
-                    if (clusterData[outerI][outerJ] != clusterId) {
-                        markClusterDepthFirst(clusterData, clusterId, outerI, outerJ, i, j);
+        int[] stack = context.getStack();
+        int top = 0;
+        stack[top + FRAME_I] = i;
+        stack[top + FRAME_J] = j;
+        stack[top + FRAME_DIRECTION] = GridUtils.direction(prevI - i, prevJ - j);
+        stack[top + FRAME_STEP] = 0;
+        stack[top + FRAME_MARKED] = 0;
+
+        while (true) {
+            int centerI = stack[top + FRAME_I];
+            int centerJ = stack[top + FRAME_J];
+
+            if (stack[top + FRAME_STEP] == 8 - 1) {
+                if (top == 0) {
+                    return stack[top + FRAME_MARKED] != 0;
+                }
+                top -= FRAME_SIZE;
+                continue;
+            }
+            stack[top + FRAME_STEP]++;
+
+            int direction = GridUtils.nextCWInner8(stack[top + FRAME_DIRECTION]);
+            stack[top + FRAME_DIRECTION] = direction;
+            int outerI = centerI + GridUtils.directionI(direction);
+            int outerJ = centerJ + GridUtils.directionJ(direction);
+
+            if (isOccupied(context, outerI, outerJ)) {
+                if (hasConnectibleNeighborsLeftOrRight(context, centerI, centerJ, direction)) {
+                    stack[top + FRAME_MARKED] = 1;
+                    context.setLabel(centerI, centerJ, clusterId);
+                    if (context.getLabel(outerI, outerJ) != clusterId) {
+                        // descend into the neighbor, coming from the current position
+                        top += FRAME_SIZE;
+                        stack[top + FRAME_I] = outerI;
+                        stack[top + FRAME_J] = outerJ;
+                        stack[top + FRAME_DIRECTION] = GridUtils.direction(-GridUtils.directionI(direction), -GridUtils.directionJ(direction));
+                        stack[top + FRAME_STEP] = 0;
+                        stack[top + FRAME_MARKED] = 0;
                     }
                 }
             }
         }
+    }
+
+    /**
+     * Same as {@link GridUtils#hasConnectibleNeighborsLeftOrRight(int[][], int, int, int, int, int)}
+     * on the labels of the context, for the step from the center into the given direction.
+     */
+    private static boolean hasConnectibleNeighborsLeftOrRight(ClusterContext context, int centerI, int centerJ, int direction) {
+        int left = GridUtils.nextCCWInner8(direction);
+        if (isOccupied(context, centerI + GridUtils.directionI(left), centerJ + GridUtils.directionJ(left))) {
+            return true;
+        }
+        int right = GridUtils.nextCWInner8(direction);
+        if (isOccupied(context, centerI + GridUtils.directionI(right), centerJ + GridUtils.directionJ(right))) {
+            return true;
+        }
+        if (GridUtils.directionI(direction) == 0 || GridUtils.directionJ(direction) == 0) {
+            // for horizontal/vertical steps there are 2 neighbors each side that can be connected
+            left = GridUtils.nextCCWInner8(left);
+            if (isOccupied(context, centerI + GridUtils.directionI(left), centerJ + GridUtils.directionJ(left))) {
+                return true;
+            }
+            right = GridUtils.nextCWInner8(right);
+            if (isOccupied(context, centerI + GridUtils.directionI(right), centerJ + GridUtils.directionJ(right))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isOccupied(ClusterContext context, int i, int j) {
+        return context.isInBounds(i, j) && context.getLabel(i, j) != EMPTY;
+    }
 
-        return marked;
+    private static boolean isCluster(ClusterContext context, int i, int j, int clusterIdx) {
+        return context.isInBounds(i, j) && context.getLabel(i, j) == clusterIdx;
     }
 
     public static Array<GridPoint2> computeClusterOutline(int[][] clusterData, int clusterIdx, GridPoint2 startPosition) {
-        Array<GridPoint2> result = new Array<>();
-        result.add(new GridPoint2(startPosition));
-
-        int currentI = startPosition.x;
-        int currentJ = startPosition.y;
-        int nextI = startPosition.x;
-        int nextJ = startPosition.y - 1;
-        int lastDiffI = nextI - currentI;
-        int lastDiffJ = nextJ - currentJ;
-
-        boolean open = true;
-        while (open) {
-            int circleStartI = nextI;
-            int circleStartJ = nextJ;
-
-            for (int i = 0; i < 8 - 1; ++i) { // TODO does this loop make sense? Or should we BREAK after this loop anyways, otherwise we would try the same thing over and over again!? At least when we reach the end of this loop.
-                GridPoint2 next = GridUtils.getNextPosCWInner8(nextI, nextJ, currentI, currentJ);
-                nextI = next.x;
-                nextJ = next.y;
-
-                if (nextI == startPosition.x && nextJ == startPosition.y) {
-                    // outline is closed: stop connecting the dots
-                    open = false;
+        ClusterContext context = new ClusterContext();
+        context.load(clusterData);
+        IntArray outline = new IntArray();
+        computeClusterOutline(context, clusterIdx, startPosition.x, startPosition.y, outline);
+
+        Array<GridPoint2> result = new Array<>(outline.size / 2);
+        for (int k = 0; k < outline.size; k += 2) {
+            result.add(new GridPoint2(outline.get(k), outline.get(k + 1)));
+        }
+        return result;
+    }
+
+    /**
+     * Traces the outline of a cluster computed by {@link #computeClusters(ClusterContext)} and
+     * adds its grid positions as pairs of i,j to the output, without allocating any memory once
+     * the output is large enough.
+     * <p>
+     * The shortcuts of the trace can skip over a concave notch, after which the trace circles the
+     * notch without ever returning to the start. Such traces are detected by the number of steps,
+     * which is bounded for any closed outline, and the outline is traced again without shortcuts.
+     */
+    public static void computeClusterOutline(ClusterContext context, int clusterIdx, int startI, int startJ, IntArray outPoints) {
+        int initialSize = outPoints.size;
+        if (!traceOutlineWithShortcuts(context, clusterIdx, startI, startJ, outPoints)) {
+            outPoints.truncate(initialSize);
+            traceMooreOutline(context, clusterIdx, startI, startJ, outPoints);
+        }
+    }
 
+    /**
+     * Gets the maximum number of steps of a closed outline, which visits each grid position at
+     * most once from each of the 16 directions it can be reached from.
+     */
+    private static int getMaxOutlineSteps(ClusterContext context) {
+        return 16 * (context.getNumRows() * context.getNumCols() + 1);
+    }
+
+    /**
+     * Traces the outline using 22.5° shortcuts where possible.
+     *
+     * @return whether the outline got closed within the maximum number of steps
+     */
+    private static boolean traceOutlineWithShortcuts(ClusterContext context, int clusterIdx, int startI, int startJ, IntArray outPoints) {
+        outPoints.add(startI);
+        outPoints.add(startJ);
+
+        int currentI = startI;
+        int currentJ = startJ;
+        int nextDirection = GridUtils.direction(0, -1);
+        int lastDiffI = GridUtils.directionI(nextDirection);
+        int lastDiffJ = GridUtils.directionJ(nextDirection);
+
+        // Last position on the outer circle. Positions that are not on the outer circle of the
+        // current position, such as diagonal neighbors, do not advance it, so that the previous
+        // outer position is checked again. This keeps the outlines of the former implementation.
+        int outerI = 0;
+        int outerJ = 0;
+        boolean hasOuter = false;
+
+        int maxSteps = getMaxOutlineSteps(context);
+        for (int step = 0; step < maxSteps; ++step) {
+            int circleStartDirection = nextDirection;
+
+            // a position without any other neighbor repeats the same search, up to the bound
+            for (int i = 0; i < 8 - 1; ++i) {
+                nextDirection = GridUtils.nextCWInner8(nextDirection);
+                int nextI = currentI + GridUtils.directionI(nextDirection);
+                int nextJ = currentJ + GridUtils.directionJ(nextDirection);
+
+                if (nextI == startI && nextJ == startJ) {
+                    // outline is closed: stop connecting the dots
                     int diffI = nextI - currentI;
                     int diffJ = nextJ - currentJ;
                     if (diffI == lastDiffI && diffJ == lastDiffJ) {
-                        result.removeIndex(result.size - 1);
+                        outPoints.truncate(outPoints.size - 2);
                     }
 
-                    return result;
+                    return true;
                 }
 
-                if (GridUtils.isInBounds(clusterData, nextI, nextJ) && clusterData[nextI][nextJ] == clusterIdx) {
+                if (isCluster(context, nextI, nextJ, clusterIdx)) {
                     // check whether there would have been a 22.5° angle as well
-                    next = GridUtils.getNextPosCCWInner16(nextI, nextJ, currentI, currentJ);
-
-                    int shortCutNextI = next.x;
-                    int shortCutNextJ = next.y;
+                    int shortCutDirection = GridUtils.nextCCWInner16(nextDirection);
+                    int shortCutNextI = currentI + GridUtils.directionI(shortCutDirection);
+                    int shortCutNextJ = currentJ + GridUtils.directionJ(shortCutDirection);
                     boolean needToCorrectNext = false;
 
-                    if (GridUtils.isInBounds(clusterData, shortCutNextI, shortCutNextJ) && clusterData[nextI][nextJ] == clusterIdx) {
+                    if (context.isInBounds(shortCutNextI, shortCutNextJ)) {
                         // use shortcut if we would have hit the same target using the outer circle
 
                         // skip the first
-                        next = GridUtils.getNextPosCWOuter12(circleStartI, circleStartJ, currentI, currentJ);
+                        int outerDirection = GridUtils.nextCWOuter12(circleStartDirection);
+                        if (outerDirection != GridUtils.NO_DIRECTION) {
+                            outerI = currentI + GridUtils.directionI(outerDirection);
+                            outerJ = currentJ + GridUtils.directionJ(outerDirection);
+                            hasOuter = true;
+                        }
 
                         for (int k = 2; k < 12 - 1; ++k) {
-                            next = GridUtils.getNextPosCWOuter12(next.x, next.y, currentI, currentJ);
+                            outerDirection = hasOuter
+                                    ? GridUtils.nextCWOuter12(GridUtils.direction(outerI - currentI, outerJ - currentJ))
+                                    : GridUtils.NO_DIRECTION;
+                            if (outerDirection != GridUtils.NO_DIRECTION) {
+                                outerI = currentI + GridUtils.directionI(outerDirection);
+                                outerJ = currentJ + GridUtils.directionJ(outerDirection);
+                            }
 
-                            if (GridUtils.isInBounds(clusterData, next.x, next.y) && clusterData[next.x][next.y] == clusterIdx) {
-                                if (next.x == shortCutNextI && next.y == shortCutNextJ) {
+                            if (hasOuter && isCluster(context, outerI, outerJ, clusterIdx)) {
+                                if (outerI == shortCutNextI && outerJ == shortCutNextJ) {
 
-                                    if (shortCutNextI == startPosition.x && shortCutNextJ == startPosition.y) {
+                                    if (shortCutNextI == startI && shortCutNextJ == startJ) {
                                         // outline is closed: stop connecting the dots
-                                        open = false;
-
                                         int diffI = shortCutNextI - currentI;
                                         int diffJ = shortCutNextJ - currentJ;
                                         if (diffI == lastDiffI && diffJ == lastDiffJ) {
-                                            result.removeIndex(result.size - 1);
+                                            outPoints.truncate(outPoints.size - 2);
                                         }
 
-                                        return result;
+                                        return true;
                                     }
 
                                     nextI = shortCutNextI;
@@ -141,31 +306,92 @@ public class ClusterUtils {
                     int diffI = nextI - currentI;
                     int diffJ = nextJ - currentJ;
                     if (diffI == lastDiffI && diffJ == lastDiffJ) {
-                        result.removeIndex(result.size - 1);
+                        outPoints.truncate(outPoints.size - 2);
                     }
                     lastDiffI = diffI;
                     lastDiffJ = diffJ;
 
-                    result.add(new GridPoint2(nextI, nextJ));
-                    int tmpI = currentI;
-                    int tmpJ = currentJ;
+                    outPoints.add(nextI);
+                    outPoints.add(nextJ);
                     currentI = nextI;
                     currentJ = nextJ;
-                    nextI = tmpI;
-                    nextJ = tmpJ;
+                    // continue the search from the previous position
+                    nextDirection = GridUtils.direction(-diffI, -diffJ);
 
                     if (needToCorrectNext) {
                         // we did one step on inner-16, which we need to repeat to be on a inner-8 position again
-                        next = GridUtils.getNextPosCCWInner16(nextI, nextJ, currentI, currentJ);
-                        nextI = next.x;
-                        nextJ = next.y;
+                        nextDirection = GridUtils.nextCCWInner16(nextDirection);
                     }
 
                     break;
                 }
             }
         }
+        return false;
+    }
 
-        return result;
+    /**
+     * Traces the outline by Moore-neighbor tracing, which stops when the start position is left
+     * the same way as initially. This terminates for any cluster, because each step only depends
+     * on the position and the direction it has been entered from, so that the trace is periodic,
+     * and the first step from the start position is part of the period.
+     */
+    private static void traceMooreOutline(ClusterContext context, int clusterIdx, int startI, int startJ, IntArray outPoints) {
+        outPoints.add(startI);
+        outPoints.add(startJ);
+
+        // the start is the first grid position of the cluster in scan order, so there is nothing below
+        int backtrack = GridUtils.direction(0, -1);
+        int firstDirection = findMooreDirection(context, clusterIdx, startI, startJ, backtrack);
+        if (firstDirection == backtrack) {
+            // single grid position
+            return;
+        }
+
+        int direction = firstDirection;
+        int currentI = startI;
+        int currentJ = startJ;
+        int lastDiffI = 0;
+        int lastDiffJ = 0;
+
+        int maxSteps = getMaxOutlineSteps(context);
+        for (int step = 0; step < maxSteps; ++step) {
+            int diffI = GridUtils.directionI(direction);
+            int diffJ = GridUtils.directionJ(direction);
+            // continue the search from the last empty position, seen from the next position
+            int previousDirection = GridUtils.nextCCWInner8(direction);
+            backtrack = GridUtils.direction(
+                    GridUtils.directionI(previousDirection) - diffI,
+                    GridUtils.directionJ(previousDirection) - diffJ);
+            currentI += diffI;
+            currentJ += diffJ;
+
+            if (diffI == lastDiffI && diffJ == lastDiffJ) {
+                outPoints.truncate(outPoints.size - 2);
+            }
+            lastDiffI = diffI;
+            lastDiffJ = diffJ;
+
+            direction = findMooreDirection(context, clusterIdx, currentI, currentJ, backtrack);
+            if (currentI == startI && currentJ == startJ && direction == firstDirection) {
+                return;
+            }
+            outPoints.add(currentI);
+            outPoints.add(currentJ);
+        }
+        throw new IllegalStateException("Outline of cluster " + clusterIdx + " did not close.");
+    }
+
+    /**
+     * Finds the direction of the next grid position of the cluster clock-wise after the given
+     * backtrack direction, or the backtrack direction when there is no other grid position.
+     */
+    private static int findMooreDirection(ClusterContext context, int clusterIdx, int i, int j, int backtrack) {
+        int direction = GridUtils.nextCWInner8(backtrack);
+        while (direction != backtrack
+                && !isCluster(context, i + GridUtils.directionI(direction), j + GridUtils.directionJ(direction), clusterIdx)) {
+            direction = GridUtils.nextCWInner8(direction);
+        }
+        return direction;
     }
 }
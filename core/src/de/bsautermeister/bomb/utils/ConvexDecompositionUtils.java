@@ -0,0 +1,156 @@
+package de.bsautermeister.bomb.utils;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.ShortArray;
+
+/**
+ * Convex decomposition based on Hertel-Mehlhorn, which merges the triangles of a triangulated
+ * polygon along their shared diagonals as long as the merged polygon stays convex and does not
+ * exceed the maximum number of vertices.
+ */
+public class ConvexDecompositionUtils {
+
+    /**
+     * Tolerance of the cross product of two adjacent edges, below which their shared vertex is
+     * treated as collinear.
+     */
+    private static final float COLLINEAR_EPSILON = 1e-6f;
+
+    private ConvexDecompositionUtils() {}
+
+    /**
+     * Merges the triangles, given as vertex indices into the vertices in the form [x0, y0, x1, y1, ...],
+     * into convex polygons. The polygons are appended to the output in counter-clock-wise order
+     * without collinear vertices, with the number of vertices of each polygon.
+     */
+    public static void decompose(float[] vertices, ShortArray triangles, int maxVertices,
+                                 FloatArray outPolygons, IntArray outVertexCounts) {
+        int numVertices = vertices.length / 2;
+        int numTriangles = triangles.size / 3;
+        Array<IntArray> polygons = new Array<>(numTriangles);
+        IntIntMap edgeOwners = new IntIntMap(numTriangles * 3);
+
+        for (int t = 0; t < numTriangles; ++t) {
+            int a = triangles.get(3 * t);
+            int b = triangles.get(3 * t + 1);
+            int c = triangles.get(3 * t + 2);
+            IntArray polygon = new IntArray(maxVertices);
+            if (cross(vertices, a, b, c) < 0) {
+                polygon.addAll(a, c, b);
+            } else {
+                polygon.addAll(a, b, c);
+            }
+            polygons.add(polygon);
+            registerEdges(edgeOwners, numVertices, polygon, t);
+        }
+
+        IntArray merged = new IntArray(maxVertices);
+        for (int p = 0; p < polygons.size; ++p) {
+            IntArray polygon = polygons.get(p);
+            if (polygon == null) continue;
+
+            boolean hasMerged;
+            do {
+                hasMerged = false;
+                for (int k = 0; k < polygon.size; ++k) {
+                    int a = polygon.get(k);
+                    int b = polygon.get((k + 1) % polygon.size);
+                    int q = edgeOwners.get(b * numVertices + a, -1);
+                    if (q < 0 || q == p) continue;
+
+                    IntArray other = polygons.get(q);
+                    if (merge(vertices, polygon, k, other, maxVertices, merged)) {
+                        edgeOwners.remove(a * numVertices + b, -1);
+                        edgeOwners.remove(b * numVertices + a, -1);
+                        polygon.clear();
+                        polygon.addAll(merged);
+                        registerEdges(edgeOwners, numVertices, polygon, p);
+                        polygons.set(q, null);
+                        hasMerged = true;
+                        break;
+                    }
+                }
+            } while (hasMerged);
+        }
+
+        for (IntArray polygon : polygons) {
+            if (polygon == null) continue;
+
+            int count = 0;
+            for (int k = 0; k < polygon.size; ++k) {
+                if (isCorner(vertices, polygon, k)) {
+                    int v = polygon.get(k);
+                    outPolygons.add(vertices[2 * v], vertices[2 * v + 1]);
+                    count++;
+                }
+            }
+            outVertexCounts.add(count);
+        }
+    }
+
+    /**
+     * Merges the other polygon into the polygon along the shared edge that starts at the given
+     * vertex position of the polygon. Returns false when the result would not be convex or would
+     * exceed the maximum number of vertices.
+     */
+    private static boolean merge(float[] vertices, IntArray polygon, int edgeStart, IntArray other,
+                                 int maxVertices, IntArray outMerged) {
+        int otherStart = other.indexOf(polygon.get(edgeStart));
+
+        outMerged.clear();
+        for (int k = 1; k <= polygon.size; ++k) {
+            outMerged.add(polygon.get((edgeStart + k) % polygon.size));
+        }
+        for (int k = 1; k < other.size - 1; ++k) {
+            int v = other.get((otherStart + k) % other.size);
+            if (polygon.contains(v)) {
+                // polygons share more than a single edge
+                return false;
+            }
+            outMerged.add(v);
+        }
+
+        int corners = 0;
+        for (int k = 0; k < outMerged.size; ++k) {
+            float cross = cross(vertices, outMerged, k);
+            if (cross < -COLLINEAR_EPSILON) {
+                return false;
+            }
+            if (cross > COLLINEAR_EPSILON) {
+                corners++;
+            }
+        }
+        return corners >= 3 && corners <= maxVertices;
+    }
+
+    private static void registerEdges(IntIntMap edgeOwners, int numVertices, IntArray polygon, int owner) {
+        for (int k = 0; k < polygon.size; ++k) {
+            int from = polygon.get(k);
+            int to = polygon.get((k + 1) % polygon.size);
+            edgeOwners.put(from * numVertices + to, owner);
+        }
+    }
+
+    private static boolean isCorner(float[] vertices, IntArray polygon, int k) {
+        return cross(vertices, polygon, k) > COLLINEAR_EPSILON;
+    }
+
+    private static float cross(float[] vertices, IntArray polygon, int k) {
+        int size = polygon.size;
+        return cross(vertices,
+                polygon.get((k + size - 1) % size),
+                polygon.get(k),
+                polygon.get((k + 1) % size));
+    }
+
+    private static float cross(float[] vertices, int a, int b, int c) {
+        float abX = vertices[2 * b] - vertices[2 * a];
+        float abY = vertices[2 * b + 1] - vertices[2 * a + 1];
+        float bcX = vertices[2 * c] - vertices[2 * b];
+        float bcY = vertices[2 * c + 1] - vertices[2 * b + 1];
+        return abX * bcY - abY * bcX;
+    }
+}
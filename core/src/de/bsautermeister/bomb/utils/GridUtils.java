@@ -2,133 +2,179 @@ package de.bsautermeister.bomb.utils;
 
 import com.badlogic.gdx.math.GridPoint2;
 
+import java.util.Arrays;
+
 public class GridUtils {
 
+    /**
+     * Positions in the 5x5 neighborhood of a center are identified by a direction index, which
+     * encodes the offset di, dj to the center as (di + 2) * 5 + (dj + 2). The stepping functions
+     * look up the next direction on their circle in precomputed tables, which are immutable so
+     * that they can be used from any thread.
+     */
+    public static final int NO_DIRECTION = -1;
+
+    private static final int SPAN = 5;
+    private static final int NUM_DIRECTIONS = SPAN * SPAN;
+
+    private static final int[] DIRECTION_I = new int[NUM_DIRECTIONS];
+    private static final int[] DIRECTION_J = new int[NUM_DIRECTIONS];
+    static {
+        for (int index = 0; index < NUM_DIRECTIONS; ++index) {
+            DIRECTION_I[index] = index / SPAN - 2;
+            DIRECTION_J[index] = index % SPAN - 2;
+        }
+    }
+
+    /**
+     * Circles of offsets in clock-wise order.
+     */
+    private static final int[] CIRCLE_INNER_8 = {
+            0, -1,  -1, -1,  -1, 0,  -1, 1,  0, 1,  1, 1,  1, 0,  1, -1
+    };
+    private static final int[] CIRCLE_INNER_16 = {
+            0, -1,  -1, -2,  -1, -1,  -2, -1,  -1, 0,  -2, 1,  -1, 1,  -1, 2,
+            0, 1,  1, 2,  1, 1,  2, 1,  1, 0,  2, -1,  1, -1,  1, -2
+    };
+    private static final int[] CIRCLE_OUTER_12 = {
+            0, -2,  -1, -2,  -2, -1,  -2, 0,  -2, 1,  -1, 2,
+            0, 2,  1, 2,  2, 1,  2, 0,  2, -1,  1, -2
+    };
+
+    private static final int[] CW_INNER_16 = createTable(CIRCLE_INNER_16, true);
+    private static final int[] CCW_INNER_16 = createTable(CIRCLE_INNER_16, false);
+    private static final int[] CW_INNER_8 = createTable(CIRCLE_INNER_8, true);
+    private static final int[] CCW_INNER_8 = createTable(CIRCLE_INNER_8, false);
+    private static final int[] CW_OUTER_12 = createOuterTable();
+
     private GridUtils() {}
 
-    private static final GridPoint2 tmpCWInner16 = new GridPoint2();
+    private static int[] createTable(int[] circle, boolean clockwise) {
+        int[] table = new int[NUM_DIRECTIONS];
+        Arrays.fill(table, NO_DIRECTION);
+        int count = circle.length / 2;
+        for (int k = 0; k < count; ++k) {
+            int next = clockwise ? (k + 1) % count : (k + count - 1) % count;
+            table[direction(circle[2 * k], circle[2 * k + 1])] = direction(circle[2 * next], circle[2 * next + 1]);
+        }
+        return table;
+    }
+
+    private static int[] createOuterTable() {
+        int[] table = createTable(CIRCLE_OUTER_12, true);
+        // positions on the inner horizontal/vertical axes continue like the outer ones behind them
+        table[direction(0, -1)] = table[direction(0, -2)];
+        table[direction(-1, 0)] = table[direction(-2, 0)];
+        table[direction(0, 1)] = table[direction(0, 2)];
+        table[direction(1, 0)] = table[direction(2, 0)];
+        return table;
+    }
+
+    /**
+     * Gets the direction index of the offset di, dj to the center, or {@link #NO_DIRECTION} when
+     * the offset is outside of the 5x5 neighborhood.
+     */
+    public static int direction(int di, int dj) {
+        if (di < -2 || di > 2 || dj < -2 || dj > 2) {
+            return NO_DIRECTION;
+        }
+        return (di + 2) * SPAN + (dj + 2);
+    }
+
+    public static int directionI(int direction) {
+        return DIRECTION_I[direction];
+    }
+
+    public static int directionJ(int direction) {
+        return DIRECTION_J[direction];
+    }
+
+    public static int nextCWInner16(int direction) {
+        return direction != NO_DIRECTION ? CW_INNER_16[direction] : NO_DIRECTION;
+    }
+
+    public static int nextCCWInner16(int direction) {
+        return direction != NO_DIRECTION ? CCW_INNER_16[direction] : NO_DIRECTION;
+    }
+
+    public static int nextCWInner8(int direction) {
+        return direction != NO_DIRECTION ? CW_INNER_8[direction] : NO_DIRECTION;
+    }
+
+    public static int nextCCWInner8(int direction) {
+        return direction != NO_DIRECTION ? CCW_INNER_8[direction] : NO_DIRECTION;
+    }
+
+    /**
+     * Gets the next direction on the outer circle, where the horizontal and vertical positions of
+     * the inner circle continue like the outer positions behind them.
+     */
+    public static int nextCWOuter12(int direction) {
+        return direction != NO_DIRECTION ? CW_OUTER_12[direction] : NO_DIRECTION;
+    }
+
+    /**
+     * Gets the next position of i,j clock-wise on the 16 inner positions around the center. This
+     * allocates the result, so use {@link #nextCWInner16(int)} in performance critical code.
+     */
     public static GridPoint2 getNextPosCWInner16(int i, int j, int centerI, int centerJ) {
-        int diffI = centerI - i;
-        int diffJ = centerJ - j;
-        if (diffI == 0 && diffJ == 1) tmpCWInner16.set(centerI - 1, centerJ - 2);
-        if (diffI == 1 && diffJ == 2) tmpCWInner16.set(centerI - 1, centerJ - 1);
-        if (diffI == 1 && diffJ == 1) tmpCWInner16.set(centerI - 2, centerJ - 1);
-        if (diffI == 2 && diffJ == 1) tmpCWInner16.set(centerI - 1, centerJ);
-        if (diffI == 1 && diffJ == 0) tmpCWInner16.set(centerI - 2, centerJ + 1);
-        if (diffI == 2 && diffJ == -1) tmpCWInner16.set(centerI - 1, centerJ + 1);
-        if (diffI == 1 && diffJ == -1) tmpCWInner16.set(centerI - 1, centerJ + 2);
-        if (diffI == 1 && diffJ == -2) tmpCWInner16.set(centerI, centerJ + 1);
-        if (diffI == 0 && diffJ == -1) tmpCWInner16.set(centerI + 1, centerJ + 2);
-        if (diffI == -1 && diffJ == -2) tmpCWInner16.set(centerI + 1, centerJ + 1);
-        if (diffI == -1 && diffJ == -1) tmpCWInner16.set(centerI + 2, centerJ + 1);
-        if (diffI == -2 && diffJ == -1) tmpCWInner16.set(centerI + 1, centerJ);
-        if (diffI == -1 && diffJ == 0) tmpCWInner16.set(centerI + 2, centerJ - 1);
-        if (diffI == -2 && diffJ == 1) tmpCWInner16.set(centerI + 1, centerJ - 1);
-        if (diffI == -1 && diffJ == 1) tmpCWInner16.set(centerI + 1, centerJ - 2);
-        if (diffI == -1 && diffJ == 2) tmpCWInner16.set(centerI, centerJ - 1);
-        return tmpCWInner16;
-    }
-
-    private static final GridPoint2 tmpCCWInner16 = new GridPoint2();
+        return toPosition(nextCWInner16(direction(i - centerI, j - centerJ)), centerI, centerJ);
+    }
+
     public static GridPoint2 getNextPosCCWInner16(int i, int j, int centerI, int centerJ) {
-        int diffI = centerI - i;
-        int diffJ = centerJ - j;
-        if (diffI == 0 && diffJ == 1) tmpCCWInner16.set(centerI + 1, centerJ - 2);
-        if (diffI == -1 && diffJ == 2) tmpCCWInner16.set(centerI + 1, centerJ - 1);
-        if (diffI == -1 && diffJ == 1) tmpCCWInner16.set(centerI + 2, centerJ - 1);
-        if (diffI == -2 && diffJ == 1) tmpCCWInner16.set(centerI + 1, centerJ);
-        if (diffI == -1 && diffJ == 0) tmpCCWInner16.set(centerI + 2, centerJ + 1);
-        if (diffI == -2 && diffJ == -1) tmpCCWInner16.set(centerI + 1, centerJ + 1);
-        if (diffI == -1 && diffJ == -1) tmpCCWInner16.set(centerI + 1, centerJ + 2);
-        if (diffI == -1 && diffJ == -2) tmpCCWInner16.set(centerI, centerJ + 1);
-        if (diffI == 0 && diffJ == -1) tmpCCWInner16.set(centerI - 1, centerJ + 2);
-        if (diffI == 1 && diffJ == -2) tmpCCWInner16.set(centerI - 1, centerJ + 1);
-        if (diffI == 1 && diffJ == -1) tmpCCWInner16.set(centerI - 2, centerJ + 1);
-        if (diffI == 2 && diffJ == -1) tmpCCWInner16.set(centerI - 1, centerJ);
-        if (diffI == 1 && diffJ == 0) tmpCCWInner16.set(centerI - 2, centerJ - 1);
-        if (diffI == 2 && diffJ == 1) tmpCCWInner16.set(centerI - 1, centerJ - 1);
-        if (diffI == 1 && diffJ == 1) tmpCCWInner16.set(centerI - 1, centerJ - 2);
-        if (diffI == 1 && diffJ == 2) tmpCCWInner16.set(centerI, centerJ - 1);
-        return tmpCCWInner16;
-    }
-
-    private static final GridPoint2 tmpCWInner8 = new GridPoint2();
+        return toPosition(nextCCWInner16(direction(i - centerI, j - centerJ)), centerI, centerJ);
+    }
+
     public static GridPoint2 getNextPosCWInner8(int i, int j, int centerI, int centerJ) {
-        int diffI = centerI - i;
-        int diffJ = centerJ - j;
-        if (diffI == 0 && diffJ == 1) tmpCWInner8.set(centerI - 1, centerJ - 1);
-        if (diffI == 1 && diffJ == 1) tmpCWInner8.set(centerI - 1, centerJ);
-        if (diffI == 1 && diffJ == 0) tmpCWInner8.set(centerI - 1, centerJ + 1);
-        if (diffI == 1 && diffJ == -1) tmpCWInner8.set(centerI, centerJ + 1);
-        if (diffI == 0 && diffJ == -1) tmpCWInner8.set(centerI + 1, centerJ + 1);
-        if (diffI == -1 && diffJ == -1) tmpCWInner8.set(centerI + 1, centerJ);
-        if (diffI == -1 && diffJ == 0) tmpCWInner8.set(centerI + 1, centerJ - 1);
-        if (diffI == -1 && diffJ == 1) tmpCWInner8.set(centerI, centerJ - 1);
-        return tmpCWInner8;
-    }
-
-    private static final GridPoint2 tmpCCWInner8 = new GridPoint2();
+        return toPosition(nextCWInner8(direction(i - centerI, j - centerJ)), centerI, centerJ);
+    }
+
     public static GridPoint2 getNextPosCCWInner8(int i, int j, int centerI, int centerJ) {
-        int diffI = centerI - i;
-        int diffJ = centerJ - j;
-        if (diffI == 0 && diffJ == 1) tmpCCWInner8.set(centerI + 1, centerJ - 1);
-        if (diffI == 1 && diffJ == 1) tmpCCWInner8.set(centerI, centerJ - 1);
-        if (diffI == 1 && diffJ == 0) tmpCCWInner8.set(centerI - 1, centerJ - 1);
-        if (diffI == 1 && diffJ == -1) tmpCCWInner8.set(centerI - 1, centerJ);
-        if (diffI == 0 && diffJ == -1) tmpCCWInner8.set(centerI - 1, centerJ + 1);
-        if (diffI == -1 && diffJ == -1) tmpCCWInner8.set(centerI, centerJ + 1);
-        if (diffI == -1 && diffJ == 0) tmpCCWInner8.set(centerI + 1, centerJ + 1);
-        if (diffI == -1 && diffJ == 1) tmpCCWInner8.set(centerI + 1, centerJ);
-        return tmpCCWInner8;
-    }
-
-    private static final GridPoint2 tmpCWOuter12 = new GridPoint2();
+        return toPosition(nextCCWInner8(direction(i - centerI, j - centerJ)), centerI, centerJ);
+    }
+
     public static GridPoint2 getNextPosCWOuter12(int i, int j, int centerI, int centerJ) {
-        int diffI = centerI - i;
-        int diffJ = centerJ - j;
-        if (diffI == 0 && diffJ >= 1) tmpCWOuter12.set(centerI - 1, centerJ - 2);
-        if (diffI == 1 && diffJ == 2) tmpCWOuter12.set(centerI - 2, centerJ - 1);
-        if (diffI == 2 && diffJ == 1) tmpCWOuter12.set(centerI - 2, centerJ);
-        if (diffI >= 1 && diffJ == 0) tmpCWOuter12.set(centerI - 2, centerJ + 1);
-        if (diffI == 2 && diffJ == -1) tmpCWOuter12.set(centerI - 1, centerJ + 2);
-        if (diffI == 1 && diffJ == -2) tmpCWOuter12.set(centerI, centerJ + 2);
-        if (diffI == 0 && diffJ <= -1) tmpCWOuter12.set(centerI + 1, centerJ + 2);
-        if (diffI == -1 && diffJ == -2) tmpCWOuter12.set(centerI + 2, centerJ + 1);
-        if (diffI == -2 && diffJ == -1) tmpCWOuter12.set(centerI + 2, centerJ);
-        if (diffI <= -1 && diffJ == 0) tmpCWOuter12.set(centerI + 2, centerJ - 1);
-        if (diffI == -2 && diffJ == 1) tmpCWOuter12.set(centerI + 1, centerJ - 2);
-        if (diffI == -1 && diffJ == 2) tmpCWOuter12.set(centerI, centerJ - 2);
-        return tmpCWOuter12;
+        return toPosition(nextCWOuter12(direction(i - centerI, j - centerJ)), centerI, centerJ);
+    }
+
+    private static GridPoint2 toPosition(int direction, int centerI, int centerJ) {
+        if (direction == NO_DIRECTION) {
+            throw new IllegalArgumentException("Position is not on the circle around the center.");
+        }
+        return new GridPoint2(centerI + DIRECTION_I[direction], centerJ + DIRECTION_J[direction]);
     }
 
     /**
      * Checks whether the node on i,j from prevI, prevJ would be connectable to any other neighbor.
      */
     public static boolean hasConnectibleNeighborsLeftOrRight(int[][] data, int i, int j, int prevI, int prevJ, int emptyValue) {
-        GridPoint2 leftPos = getNextPosCCWInner8(i, j, prevI, prevJ);
-        if (isInBounds(data, leftPos) &&  data[leftPos.x][leftPos.y] != emptyValue) {
+        int direction = direction(i - prevI, j - prevJ);
+        int left = nextCCWInner8(direction);
+        if (isDefined(data, prevI + DIRECTION_I[left], prevJ + DIRECTION_J[left], emptyValue)) {
             return true;
         }
-        GridPoint2 rightPos = getNextPosCWInner8(i, j, prevI, prevJ);
-        if (isInBounds(data, rightPos) && data[rightPos.x][rightPos.y] != emptyValue) {
+        int right = nextCWInner8(direction);
+        if (isDefined(data, prevI + DIRECTION_I[right], prevJ + DIRECTION_J[right], emptyValue)) {
             return true;
         }
-        int diffI = i - prevI;
-        int diffJ = j - prevJ;
-        if (diffI == 0 || diffJ == 0) {
+        if (i == prevI || j == prevJ) {
             // for horizontal/vertical steps there are 2 neighbors each side that can be connected
-            leftPos = getNextPosCCWInner8(leftPos.x, leftPos.y, prevI, prevJ);
-            if (isInBounds(data, leftPos) &&  data[leftPos.x][leftPos.y] != emptyValue) {
+            left = nextCCWInner8(left);
+            if (isDefined(data, prevI + DIRECTION_I[left], prevJ + DIRECTION_J[left], emptyValue)) {
                 return true;
             }
-            rightPos = getNextPosCWInner8(rightPos.x, rightPos.y, prevI, prevJ);
-            if (isInBounds(data, rightPos) && data[rightPos.x][rightPos.y] != emptyValue) {
+            right = nextCWInner8(right);
+            if (isDefined(data, prevI + DIRECTION_I[right], prevJ + DIRECTION_J[right], emptyValue)) {
                 return true;
             }
         }
         return false;
     }
 
+    private static boolean isDefined(int[][] data, int i, int j, int emptyValue) {
+        return isInBounds(data, i, j) && data[i][j] != emptyValue;
+    }
+
     public static int countNeighbors(int[][] data, int i, int j, int value) {
         int result = 0;
         for (int ii = i - 1; ii <= i + 1; ++ii) {
@@ -0,0 +1,210 @@
+package de.bsautermeister.bomb.utils;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
+
+/**
+ * Outline extraction based on marching squares over the grid positions. Each block of 2x2 grid
+ * positions contributes a square when all of its corners are defined, or a triangle when three of
+ * them are defined. The outlines are the boundaries of the union of these shapes, which are traced
+ * using a lookup of the outgoing boundary edges of each grid position. This makes the extraction
+ * linear in the number of grid positions.
+ */
+public class MarchingSquaresUtils {
+
+    /**
+     * Offsets of the 8 directions in clock-wise order, starting with up.
+     */
+    private static final int[] DIR_I = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int[] DIR_J = {1, 1, 0, -1, -1, -1, 0, 1};
+
+    /**
+     * Lookup of the direction index by offset, stored at (di + 1) * 3 + (dj + 1).
+     */
+    private static final int[] DIR_INDEX = {5, 6, 7, 4, -1, 0, 3, 2, 1};
+
+    /**
+     * Preferred turns relative to the incoming direction, in clock-wise steps. Taking the sharpest
+     * right turn first keeps outlines that only touch in a single grid position separated.
+     */
+    private static final int[] TURN_PREFERENCE = {3, 2, 1, 0, 7, 6, 5, 4};
+
+    /**
+     * Corner offsets of a block in clock-wise order.
+     */
+    private static final int[] CORNER_I = {0, 0, 1, 1};
+    private static final int[] CORNER_J = {0, 1, 1, 0};
+
+    /**
+     * Edge lookup per thread, because the outlines of different fragments can be computed in
+     * parallel. The grid data is bit-packed, which limits the resolution to the bits of a long.
+     */
+    private static final ThreadLocal<byte[]> tmpEdges = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[Long.SIZE * Long.SIZE];
+        }
+    };
+    private static final ThreadLocal<IntArray> tmpOutline = new ThreadLocal<IntArray>() {
+        @Override
+        protected IntArray initialValue() {
+            return new IntArray();
+        }
+    };
+
+    private MarchingSquaresUtils() {}
+
+    /**
+     * Computes the clock-wise outlines of bit-packed grid data, where bit j of word i represents
+     * the grid position i,j. Each outline is returned as grid positions in the form
+     * [i0, j0, i1, j1, ...], starting at its first grid position in scan order, and without
+     * collinear grid positions. Holes are not part of the result.
+     */
+    public static Array<int[]> computeOutlines(long[] gridData, int resolution) {
+        IntArray points = new IntArray();
+        IntArray sizes = new IntArray();
+        computeOutlines(gridData, resolution, points, sizes);
+
+        Array<int[]> result = new Array<>(sizes.size);
+        int offset = 0;
+        for (int k = 0; k < sizes.size; ++k) {
+            result.add(Arrays.copyOfRange(points.items, offset, offset + sizes.get(k)));
+            offset += sizes.get(k);
+        }
+        return result;
+    }
+
+    /**
+     * Computes the same outlines as {@link #computeOutlines(long[], int)}, but adds them one after
+     * another to the given points, and the number of values of each outline to the given sizes.
+     * This does not allocate once the arrays have grown, so that it can be used per fragment.
+     */
+    public static void computeOutlines(long[] gridData, int resolution, IntArray outPoints, IntArray outSizes) {
+        byte[] edges = tmpEdges.get();
+        // all edges are consumed by the tracing, unless a previous computation failed
+        Arrays.fill(edges, 0, resolution * resolution, (byte) 0);
+        for (int i = 0; i < resolution - 1; ++i) {
+            if ((gridData[i] | gridData[i + 1]) == 0L) continue;
+
+            for (int j = 0; j < resolution - 1; ++j) {
+                addBlockEdges(edges, gridData, resolution, i, j);
+            }
+        }
+
+        IntArray outline = tmpOutline.get();
+        for (int i = 0; i < resolution; ++i) {
+            for (int j = 0; j < resolution; ++j) {
+                while (edges[i * resolution + j] != 0) {
+                    traceOutline(edges, resolution, i, j, outline);
+                    if (isClockwise(outline)) {
+                        outPoints.addAll(outline);
+                        outSizes.add(outline.size);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void addBlockEdges(byte[] edges, long[] gridData, int resolution, int i, int j) {
+        int missing = -1;
+        int count = 0;
+        for (int c = 0; c < 4; ++c) {
+            if (isSet(gridData, i + CORNER_I[c], j + CORNER_J[c])) {
+                count++;
+            } else {
+                missing = c;
+            }
+        }
+
+        if (count < 3) {
+            // no area covered by this block
+            return;
+        }
+
+        int prev = -1;
+        int first = -1;
+        for (int c = 0; c < 4; ++c) {
+            if (c == missing) continue;
+            if (prev >= 0) {
+                addEdge(edges, resolution, i + CORNER_I[prev], j + CORNER_J[prev], i + CORNER_I[c], j + CORNER_J[c]);
+            } else {
+                first = c;
+            }
+            prev = c;
+        }
+        addEdge(edges, resolution, i + CORNER_I[prev], j + CORNER_J[prev], i + CORNER_I[first], j + CORNER_J[first]);
+    }
+
+    /**
+     * Adds the directed edge, or cancels it out when the same edge in opposite direction already
+     * exists, because it is shared by two adjacent shapes.
+     */
+    private static void addEdge(byte[] edges, int resolution, int fromI, int fromJ, int toI, int toJ) {
+        int dir = DIR_INDEX[(toI - fromI + 1) * 3 + (toJ - fromJ + 1)];
+        int opposite = (dir + 4) & 7;
+        int to = toI * resolution + toJ;
+        if ((edges[to] & (1 << opposite)) != 0) {
+            edges[to] &= ~(1 << opposite);
+        } else {
+            edges[fromI * resolution + fromJ] |= 1 << dir;
+        }
+    }
+
+    private static void traceOutline(byte[] edges, int resolution, int startI, int startJ, IntArray outOutline) {
+        outOutline.clear();
+        int currentI = startI;
+        int currentJ = startJ;
+        int firstDir = -1;
+        int lastDir = -1;
+        do {
+            int index = currentI * resolution + currentJ;
+            int dir = nextDirection(edges[index], lastDir);
+            edges[index] &= ~(1 << dir);
+
+            if (dir != lastDir) {
+                outOutline.add(currentI, currentJ);
+            }
+            if (firstDir < 0) {
+                firstDir = dir;
+            }
+
+            currentI += DIR_I[dir];
+            currentJ += DIR_J[dir];
+            lastDir = dir;
+        } while (currentI != startI || currentJ != startJ);
+
+        if (lastDir == firstDir && outOutline.size > 2) {
+            // start position is collinear
+            outOutline.removeIndex(0);
+            outOutline.removeIndex(0);
+        }
+    }
+
+    private static int nextDirection(int outgoing, int lastDir) {
+        if (lastDir < 0) {
+            return Integer.numberOfTrailingZeros(outgoing);
+        }
+        for (int turn : TURN_PREFERENCE) {
+            int dir = (lastDir + turn) & 7;
+            if ((outgoing & (1 << dir)) != 0) {
+                return dir;
+            }
+        }
+        throw new IllegalStateException("Outline is not closed.");
+    }
+
+    private static boolean isClockwise(IntArray outline) {
+        long area = 0;
+        for (int k = 0; k < outline.size; k += 2) {
+            int next = (k + 2) % outline.size;
+            area += (long) outline.get(k) * outline.get(next + 1) - (long) outline.get(next) * outline.get(k + 1);
+        }
+        return area < 0;
+    }
+
+    private static boolean isSet(long[] gridData, int i, int j) {
+        return (gridData[i] & (1L << j)) != 0;
+    }
+}
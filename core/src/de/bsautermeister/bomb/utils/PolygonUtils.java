@@ -1,10 +1,32 @@
 package de.bsautermeister.bomb.utils;
 
+import com.badlogic.gdx.math.Intersector;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.BooleanArray;
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
 
 public final class PolygonUtils {
 
+    /**
+     * Scratch buffers of the simplification per thread, because the geometry of different
+     * fragments can be computed in parallel.
+     */
+    private static final ThreadLocal<BooleanArray> tmpKeep = new ThreadLocal<BooleanArray>() {
+        @Override
+        protected BooleanArray initialValue() {
+            return new BooleanArray();
+        }
+    };
+    private static final ThreadLocal<IntArray> tmpChains = new ThreadLocal<IntArray>() {
+        @Override
+        protected IntArray initialValue() {
+            return new IntArray();
+        }
+    };
+
     private PolygonUtils() { }
 
     public static float[] createPolygon(float radius, int segments) {
@@ -33,4 +55,91 @@ public final class PolygonUtils {
         }
         return count * 4;
     }
+
+    /**
+     * Simplifies the closed outline in the form [x0, y0, x1, y1, ...] by Douglas-Peucker, which
+     * drops the vertices that are within the tolerance of the simplified outline. Returns null
+     * when less than three vertices are left.
+     */
+    public static float[] simplifyOutline(float[] outline, float tolerance) {
+        int numVertices = outline.length / 2;
+        if (numVertices < 3) {
+            return null;
+        }
+        if (tolerance <= 0f || numVertices == 3) {
+            return outline;
+        }
+
+        // split the loop at the vertex farthest from the first one, so that both chains have
+        // distinct end points
+        int farthest = 0;
+        float maxDistance2 = 0f;
+        for (int k = 1; k < numVertices; ++k) {
+            float dx = outline[2 * k] - outline[0];
+            float dy = outline[2 * k + 1] - outline[1];
+            float distance2 = dx * dx + dy * dy;
+            if (distance2 > maxDistance2) {
+                maxDistance2 = distance2;
+                farthest = k;
+            }
+        }
+        if (farthest == 0) {
+            return null;
+        }
+
+        BooleanArray keepArray = tmpKeep.get();
+        boolean[] keep = keepArray.setSize(numVertices);
+        Arrays.fill(keep, 0, numVertices, false);
+        keep[0] = true;
+        keep[farthest] = true;
+        // chains as pairs of start and end index, where the end index of the last chain wraps
+        IntArray chains = tmpChains.get();
+        chains.clear();
+        chains.addAll(0, farthest, farthest, numVertices);
+        while (chains.notEmpty()) {
+            int end = chains.pop();
+            int start = chains.pop();
+            float startX = outline[2 * start];
+            float startY = outline[2 * start + 1];
+            float endX = outline[2 * (end % numVertices)];
+            float endY = outline[2 * (end % numVertices) + 1];
+
+            int split = -1;
+            float maxDistance = tolerance;
+            for (int k = start + 1; k < end; ++k) {
+                float distance = Intersector.distanceSegmentPoint(
+                        startX, startY, endX, endY, outline[2 * k], outline[2 * k + 1]);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    split = k;
+                }
+            }
+
+            if (split >= 0) {
+                keep[split] = true;
+                chains.addAll(start, split, split, end);
+            }
+        }
+
+        int numKept = 0;
+        for (int k = 0; k < numVertices; ++k) {
+            if (keep[k]) numKept++;
+        }
+        if (numKept < 3) {
+            return null;
+        }
+        if (numKept == numVertices) {
+            return outline;
+        }
+
+        float[] result = new float[2 * numKept];
+        int index = 0;
+        for (int k = 0; k < numVertices; ++k) {
+            if (keep[k]) {
+                result[index++] = outline[2 * k];
+                result[index++] = outline[2 * k + 1];
+            }
+        }
+        return result;
+    }
 }
@@ -0,0 +1,163 @@
+package de.bsautermeister.bomb.benchmark;
+
+import com.badlogic.gdx.math.Circle;
+import com.badlogic.gdx.utils.Array;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import de.bsautermeister.bomb.objects.FragmentData;
+import de.bsautermeister.bomb.utils.ArrayUtils;
+import de.bsautermeister.bomb.utils.ClusterContext;
+import de.bsautermeister.bomb.utils.ClusterUtils;
+import de.bsautermeister.bomb.utils.GridUtils;
+
+/**
+ * Compares the clustering of {@link ClusterUtils} against the former recursive implementation on
+ * carved grids of different resolutions. Run the main method without any arguments, which
+ * verifies that both produce the same labels and prints the average time per grid.
+ */
+public class ClusterBenchmark {
+
+    private static final int[] RESOLUTIONS = { 16, 32, 64 };
+    private static final int NUM_GRIDS = 500;
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        for (int resolution : RESOLUTIONS) {
+            Array<long[]> grids = createCarvedGrids(random, resolution);
+            verify(grids, resolution);
+            System.out.println(String.format("%2d x %-2d   recursive: %8.0f ns   iterative: %8.0f ns",
+                    resolution, resolution, measureRecursive(grids, resolution), measureIterative(grids, resolution)));
+        }
+    }
+
+    private static Array<long[]> createCarvedGrids(Random random, int resolution) {
+        Array<long[]> result = new Array<>(NUM_GRIDS);
+        for (int n = 0; n < NUM_GRIDS; ++n) {
+            FragmentData data = new FragmentData(resolution, 1f);
+            for (int k = 0; k < 3; ++k) {
+                data.remove(new Circle(
+                        -0.5f + 2f * random.nextFloat(),
+                        -0.5f + 2f * random.nextFloat(),
+                        0.3f + 0.5f * random.nextFloat()));
+            }
+            result.add(ArrayUtils.toBits(data.getGridData()));
+        }
+        return result;
+    }
+
+    private static void verify(Array<long[]> grids, int resolution) {
+        ClusterContext context = new ClusterContext();
+        int[][] actual = new int[resolution][resolution];
+        for (long[] grid : grids) {
+            int[][] expected = ArrayUtils.copyToInt(grid, resolution, ClusterUtils.DEFINED, ClusterUtils.EMPTY);
+            int expectedCount = computeClustersRecursive(expected);
+            context.load(grid, resolution);
+            ClusterUtils.computeClusters(context);
+            context.copyTo(actual);
+            if (expectedCount != context.getCount() || !Arrays.deepEquals(expected, actual)) {
+                throw new IllegalStateException("Clusters differ from the recursive implementation");
+            }
+        }
+    }
+
+    private static double measureRecursive(Array<long[]> grids, int resolution) {
+        for (int round = 0; round < WARMUP_ROUNDS; ++round) {
+            runRecursive(grids, resolution);
+        }
+        long start = System.nanoTime();
+        int checksum = 0;
+        for (int round = 0; round < ROUNDS; ++round) {
+            checksum += runRecursive(grids, resolution);
+        }
+        long duration = System.nanoTime() - start;
+        if (checksum == 0) {
+            System.out.println("Unexpected empty result");
+        }
+        return (double) duration / ROUNDS / grids.size;
+    }
+
+    private static double measureIterative(Array<long[]> grids, int resolution) {
+        ClusterContext context = new ClusterContext();
+        for (int round = 0; round < WARMUP_ROUNDS; ++round) {
+            runIterative(grids, resolution, context);
+        }
+        long start = System.nanoTime();
+        int checksum = 0;
+        for (int round = 0; round < ROUNDS; ++round) {
+            checksum += runIterative(grids, resolution, context);
+        }
+        long duration = System.nanoTime() - start;
+        if (checksum == 0) {
+            System.out.println("Unexpected empty result");
+        }
+        return (double) duration / ROUNDS / grids.size;
+    }
+
+    private static int runRecursive(Array<long[]> grids, int resolution) {
+        int count = 0;
+        for (long[] grid : grids) {
+            count += computeClustersRecursive(
+                    ArrayUtils.copyToInt(grid, resolution, ClusterUtils.DEFINED, ClusterUtils.EMPTY));
+        }
+        return count;
+    }
+
+    private static int runIterative(Array<long[]> grids, int resolution, ClusterContext context) {
+        int count = 0;
+        for (long[] grid : grids) {
+            context.load(grid, resolution);
+            ClusterUtils.computeClusters(context);
+            count += context.getCount();
+        }
+        return count;
+    }
+
+    /**
+     * Reference implementation of the clustering before it used an explicit stack.
+     */
+    private static int computeClustersRecursive(int[][] clusterData) {
+        int clusterId = 0;
+        for (int i = 0; i < clusterData.length; ++i) {
+            for (int j = 0; j < clusterData[0].length; ++j) {
+                if (clusterData[i][j] == ClusterUtils.DEFINED) {
+                    if (markClusterRecursive(clusterData, clusterId, i, j, i, j - 1)) {
+                        clusterId++;
+                    }
+                }
+            }
+        }
+        ArrayUtils.replace2D(clusterData, ClusterUtils.DEFINED, ClusterUtils.EMPTY);
+        return clusterId;
+    }
+
+    private static boolean markClusterRecursive(int[][] clusterData, int clusterId, int i, int j, int prevI, int prevJ) {
+        boolean marked = false;
+
+        if (clusterData[i][j] == clusterId) {
+            return false;
+        }
+
+        int direction = GridUtils.direction(prevI - i, prevJ - j);
+        for (int k = 0; k < 8 - 1; ++k) {
+            direction = GridUtils.nextCWInner8(direction);
+            int outerI = i + GridUtils.directionI(direction);
+            int outerJ = j + GridUtils.directionJ(direction);
+
+            if (GridUtils.isInBounds(clusterData, outerI, outerJ) && clusterData[outerI][outerJ] != ClusterUtils.EMPTY) {
+                if (GridUtils.hasConnectibleNeighborsLeftOrRight(clusterData, outerI, outerJ, i, j, ClusterUtils.EMPTY)) {
+                    marked = true;
+                    clusterData[i][j] = clusterId;
+                    if (clusterData[outerI][outerJ] != clusterId) {
+                        markClusterRecursive(clusterData, clusterId, outerI, outerJ, i, j);
+                    }
+                }
+            }
+        }
+
+        return marked;
+    }
+}
@@ -0,0 +1,142 @@
+package de.bsautermeister.bomb.benchmark;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.badlogic.gdx.physics.box2d.CircleShape;
+import com.badlogic.gdx.physics.box2d.FixtureDef;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+
+import java.util.Random;
+
+import de.bsautermeister.bomb.contact.Bits;
+import de.bsautermeister.bomb.objects.Fragment;
+import de.bsautermeister.bomb.objects.FragmentData;
+import de.bsautermeister.bomb.objects.Ground;
+
+/**
+ * Compares the collider types of {@link Fragment} on carved ground. Run the main method without
+ * any arguments, which prints the number of fixtures, the time to carve and rebuild the ground,
+ * and the number of balls that tunnelled into the ground when dropped at increasing speeds.
+ */
+public class ColliderBenchmark {
+
+    private static final int NUM_COLS = 24;
+    private static final int NUM_ROWS = 6;
+    private static final int NUM_IMPACTS = 300;
+    private static final int NUM_BALLS = 200;
+    private static final float BALL_RADIUS = 0.25f;
+    private static final float[] DROP_SPEEDS = { 10f, 30f, 60f, 120f };
+    private static final int STEPS = 180;
+    private static final float STEP_DELTA = 1f / 60f;
+
+    private static final int WARMUP_ROUNDS = 1;
+
+    public static void main(String[] args) {
+        Box2D.init();
+        for (int round = 0; round < WARMUP_ROUNDS; ++round) {
+            for (Fragment.ColliderType type : Fragment.ColliderType.values()) {
+                run(type, false);
+            }
+        }
+        for (Fragment.ColliderType type : Fragment.ColliderType.values()) {
+            run(type, true);
+        }
+    }
+
+    private static void run(Fragment.ColliderType type, boolean print) {
+        Fragment.setColliderType(type);
+        Fragment.getGeometryCache().clear();
+
+        World world = new World(new Vector2(0f, -9.81f), true);
+        Ground ground = new Ground(world, NUM_COLS, NUM_ROWS, 1f);
+        long carveNanos = carve(ground, new Random(42));
+        int fixtures = world.getFixtureCount();
+
+        StringBuilder tunnelled = new StringBuilder();
+        for (float speed : DROP_SPEEDS) {
+            tunnelled.append(String.format("   %3.0f m/s: %3d", speed, dropBalls(world, ground, speed, new Random(7))));
+        }
+        if (print) {
+            System.out.println(String.format("%-12s fixtures: %5d   carve: %6.1f us/impact   tunnelled of %d%s",
+                    type, fixtures, carveNanos / 1000.0 / NUM_IMPACTS, NUM_BALLS, tunnelled));
+        }
+        ground.dispose();
+        world.dispose();
+    }
+
+    private static long carve(Ground ground, Random random) {
+        float[] removedVertices = new float[32 * 2 * 256];
+        long start = System.nanoTime();
+        for (int n = 0; n < NUM_IMPACTS; ++n) {
+            Vector2 position = new Vector2(random.nextFloat() * NUM_COLS, -random.nextFloat() * 3f);
+            ground.impact(removedVertices, position, 0.3f + random.nextFloat() * 1.2f);
+            ground.flushImpacts();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Drops balls from above the ground, and counts the balls that end up within solid ground
+     * or below the ground.
+     */
+    private static int dropBalls(World world, Ground ground, float speed, Random random) {
+        BodyDef bodyDef = new BodyDef();
+        bodyDef.type = BodyDef.BodyType.DynamicBody;
+        CircleShape shape = new CircleShape();
+        shape.setRadius(BALL_RADIUS);
+        FixtureDef fixtureDef = new FixtureDef();
+        fixtureDef.shape = shape;
+        fixtureDef.density = 1f;
+        fixtureDef.filter.categoryBits = Bits.BALL;
+        fixtureDef.filter.maskBits = Bits.GROUND;
+
+        Array<Body> balls = new Array<>(NUM_BALLS);
+        for (int n = 0; n < NUM_BALLS; ++n) {
+            bodyDef.position.set(BALL_RADIUS + random.nextFloat() * (NUM_COLS - 2 * BALL_RADIUS), 2f);
+            bodyDef.linearVelocity.set(0f, -speed);
+            Body ball = world.createBody(bodyDef);
+            ball.createFixture(fixtureDef);
+            balls.add(ball);
+        }
+        shape.dispose();
+
+        for (int step = 0; step < STEPS; ++step) {
+            world.step(STEP_DELTA, 6, 2);
+        }
+
+        int tunnelled = 0;
+        for (Body ball : balls) {
+            if (isInsideGround(ground, ball.getPosition())) {
+                tunnelled++;
+            }
+            world.destroyBody(ball);
+        }
+        return tunnelled;
+    }
+
+    private static boolean isInsideGround(Ground ground, Vector2 position) {
+        int row = (int) Math.floor(-position.y);
+        int col = (int) Math.floor(position.x);
+        if (col < 0 || col >= NUM_COLS) {
+            // rolled off the side of the ground, because there are no walls
+            return false;
+        }
+        if (row >= ground.getFragments().size) {
+            return true;
+        }
+        if (row < 0) {
+            return false;
+        }
+        Fragment fragment = ground.getFragments().get(row).get(col);
+        if (fragment == null) {
+            return false;
+        }
+        FragmentData data = fragment.getFragmentData();
+        int i = Math.round((position.x - fragment.getLeftX()) / data.getDelta());
+        int j = Math.round((position.y - fragment.getBottomY()) / data.getDelta());
+        return data.isSet(i, j);
+    }
+}
@@ -0,0 +1,118 @@
+package de.bsautermeister.bomb.benchmark;
+
+import com.badlogic.gdx.math.GridPoint2;
+
+import de.bsautermeister.bomb.utils.GridUtils;
+
+/**
+ * Compares the table lookups of {@link GridUtils} for stepping around a center against the
+ * former comparison chains writing into a shared position. Run the main method without any
+ * arguments, which prints the average time per step.
+ */
+public class GridStepBenchmark {
+
+    private static final int STEPS = 10_000_000;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    private static final GridPoint2 tmpCWInner8 = new GridPoint2();
+    private static final GridPoint2 tmpCCWInner16 = new GridPoint2();
+
+    public static void main(String[] args) {
+        System.out.println(String.format("inner-8   comparisons: %5.2f ns   table: %5.2f ns",
+                measure(false, false), measure(false, true)));
+        System.out.println(String.format("inner-16  comparisons: %5.2f ns   table: %5.2f ns",
+                measure(true, false), measure(true, true)));
+    }
+
+    private static double measure(boolean inner16, boolean table) {
+        for (int round = 0; round < WARMUP_ROUNDS; ++round) {
+            run(inner16, table);
+        }
+        long start = System.nanoTime();
+        int checksum = 0;
+        for (int round = 0; round < ROUNDS; ++round) {
+            checksum += run(inner16, table);
+        }
+        long duration = System.nanoTime() - start;
+        if (checksum == 42) {
+            System.out.println("Unlikely checksum");
+        }
+        return (double) duration / ROUNDS / STEPS;
+    }
+
+    /**
+     * Walks around a moving center, so that the steps cannot be predicted from a fixed pattern.
+     */
+    private static int run(boolean inner16, boolean table) {
+        int checksum = 0;
+        int i = 5;
+        int j = 4;
+        int centerI = 5;
+        int centerJ = 5;
+        int direction = GridUtils.direction(i - centerI, j - centerJ);
+        for (int step = 0; step < STEPS; ++step) {
+            if (table) {
+                direction = inner16 ? GridUtils.nextCCWInner16(direction) : GridUtils.nextCWInner8(direction);
+                i = centerI + GridUtils.directionI(direction);
+                j = centerJ + GridUtils.directionJ(direction);
+            } else {
+                GridPoint2 next = inner16 ? getNextPosCCWInner16(i, j, centerI, centerJ) : getNextPosCWInner8(i, j, centerI, centerJ);
+                i = next.x;
+                j = next.y;
+            }
+            checksum += i * 31 + j;
+            if ((checksum & 7) == 0) {
+                // move the center by the current offset
+                int diffI = i - centerI;
+                int diffJ = j - centerJ;
+                centerI = i;
+                centerJ = j;
+                i = centerI + diffI;
+                j = centerJ + diffJ;
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Reference implementation of the stepping before it used lookup tables.
+     */
+    private static GridPoint2 getNextPosCWInner8(int i, int j, int centerI, int centerJ) {
+        GridPoint2 result = tmpCWInner8;
+        int diffI = centerI - i;
+        int diffJ = centerJ - j;
+        if (diffI == 0 && diffJ == 1) result.set(centerI - 1, centerJ - 1);
+        if (diffI == 1 && diffJ == 1) result.set(centerI - 1, centerJ);
+        if (diffI == 1 && diffJ == 0) result.set(centerI - 1, centerJ + 1);
+        if (diffI == 1 && diffJ == -1) result.set(centerI, centerJ + 1);
+        if (diffI == 0 && diffJ == -1) result.set(centerI + 1, centerJ + 1);
+        if (diffI == -1 && diffJ == -1) result.set(centerI + 1, centerJ);
+        if (diffI == -1 && diffJ == 0) result.set(centerI + 1, centerJ - 1);
+        if (diffI == -1 && diffJ == 1) result.set(centerI, centerJ - 1);
+        return result;
+    }
+
+    private static GridPoint2 getNextPosCCWInner16(int i, int j, int centerI, int centerJ) {
+        GridPoint2 result = tmpCCWInner16;
+        int diffI = centerI - i;
+        int diffJ = centerJ - j;
+        if (diffI == 0 && diffJ == 1) result.set(centerI + 1, centerJ - 2);
+        if (diffI == -1 && diffJ == 2) result.set(centerI + 1, centerJ - 1);
+        if (diffI == -1 && diffJ == 1) result.set(centerI + 2, centerJ - 1);
+        if (diffI == -2 && diffJ == 1) result.set(centerI + 1, centerJ);
+        if (diffI == -1 && diffJ == 0) result.set(centerI + 2, centerJ + 1);
+        if (diffI == -2 && diffJ == -1) result.set(centerI + 1, centerJ + 1);
+        if (diffI == -1 && diffJ == -1) result.set(centerI + 1, centerJ + 2);
+        if (diffI == -1 && diffJ == -2) result.set(centerI, centerJ + 1);
+        if (diffI == 0 && diffJ == -1) result.set(centerI - 1, centerJ + 2);
+        if (diffI == 1 && diffJ == -2) result.set(centerI - 1, centerJ + 1);
+        if (diffI == 1 && diffJ == -1) result.set(centerI - 2, centerJ + 1);
+        if (diffI == 2 && diffJ == -1) result.set(centerI - 1, centerJ);
+        if (diffI == 1 && diffJ == 0) result.set(centerI - 2, centerJ - 1);
+        if (diffI == 2 && diffJ == 1) result.set(centerI - 1, centerJ - 1);
+        if (diffI == 1 && diffJ == 1) result.set(centerI - 1, centerJ - 2);
+        if (diffI == 1 && diffJ == 2) result.set(centerI, centerJ - 1);
+        return result;
+    }
+}
@@ -0,0 +1,102 @@
+package de.bsautermeister.bomb.benchmark;
+
+import com.badlogic.gdx.math.Circle;
+import com.badlogic.gdx.utils.Array;
+
+import java.util.Random;
+
+import de.bsautermeister.bomb.objects.FragmentData;
+import de.bsautermeister.bomb.utils.ArrayUtils;
+
+/**
+ * Compares the outline engines of {@link FragmentData} on random and on carved grids. Run the main
+ * method without any arguments, which prints the average time per outline computation.
+ */
+public class OutlineBenchmark {
+
+    private static final int RESOLUTION = 16;
+    private static final int NUM_GRIDS = 1000;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 50;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        Array<long[]> randomGrids = createRandomGrids(random);
+        Array<long[]> carvedGrids = createCarvedGrids(random);
+
+        for (FragmentData.OutlineEngine engine : FragmentData.OutlineEngine.values()) {
+            FragmentData.setOutlineEngine(engine);
+            System.out.println(String.format("%-16s random: %8.0f ns   carved: %8.0f ns",
+                    engine, measure(randomGrids), measure(carvedGrids)));
+        }
+    }
+
+    /**
+     * Creates grids as union of random discs, similar to the remains of heavily carved ground.
+     */
+    private static Array<long[]> createRandomGrids(Random random) {
+        Array<long[]> result = new Array<>(NUM_GRIDS);
+        for (int n = 0; n < NUM_GRIDS; ++n) {
+            FragmentData data = new FragmentData(RESOLUTION, 1f);
+            data.remove(new Circle(0.5f, 0.5f, 1f));
+            boolean[][] gridData = data.getGridData();
+            for (int k = 0; k < 4; ++k) {
+                float x = random.nextFloat();
+                float y = random.nextFloat();
+                float radius = 0.15f + 0.25f * random.nextFloat();
+                for (int i = 0; i < RESOLUTION; ++i) {
+                    for (int j = 0; j < RESOLUTION; ++j) {
+                        if (new Circle(x, y, radius).contains(data.getRelativeX(i), data.getRelativeY(j))) {
+                            gridData[i][j] = true;
+                        }
+                    }
+                }
+            }
+            result.add(ArrayUtils.toBits(gridData));
+        }
+        return result;
+    }
+
+    /**
+     * Creates grids that have been carved by a few blasts, as it happens during the game.
+     */
+    private static Array<long[]> createCarvedGrids(Random random) {
+        Array<long[]> result = new Array<>(NUM_GRIDS);
+        for (int n = 0; n < NUM_GRIDS; ++n) {
+            FragmentData data = new FragmentData(RESOLUTION, 1f);
+            for (int k = 0; k < 3; ++k) {
+                data.remove(new Circle(
+                        -0.5f + 2f * random.nextFloat(),
+                        -0.5f + 2f * random.nextFloat(),
+                        0.3f + 0.5f * random.nextFloat()));
+            }
+            result.add(ArrayUtils.toBits(data.getGridData()));
+        }
+        return result;
+    }
+
+    private static double measure(Array<long[]> grids) {
+        for (int round = 0; round < WARMUP_ROUNDS; ++round) {
+            run(grids);
+        }
+        long start = System.nanoTime();
+        int checksum = 0;
+        for (int round = 0; round < ROUNDS; ++round) {
+            checksum += run(grids);
+        }
+        long duration = System.nanoTime() - start;
+        if (checksum == 0) {
+            System.out.println("Unexpected empty result");
+        }
+        return (double) duration / ROUNDS / grids.size;
+    }
+
+    private static int run(Array<long[]> grids) {
+        int count = 0;
+        for (long[] grid : grids) {
+            FragmentData data = new FragmentData(1f, RESOLUTION, grid.clone());
+            count += data.computeOutlines().size;
+        }
+        return count;
+    }
+}
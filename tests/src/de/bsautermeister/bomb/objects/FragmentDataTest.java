@@ -1,17 +1,23 @@
 package de.bsautermeister.bomb.objects;
 
 import com.badlogic.gdx.math.Circle;
+import com.badlogic.gdx.math.Intersector;
 import com.badlogic.gdx.utils.Array;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Random;
 
 import de.bsautermeister.bomb.utils.ArrayUtils;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class FragmentDataTest {
 	private static final float EPSILON = 1e-5f;
@@ -91,6 +97,83 @@ public class FragmentDataTest {
 		assertEquals(true, Arrays.deepEquals(expected, sut.getGridData()));
 	}
 
+	@Test
+	public void removeWithPositionsMatchesPerPositionTest() {
+		Random random = new Random(42);
+		float[] actualVertices = new float[2 * 16 * 16];
+		float[] expectedVertices = new float[2 * 16 * 16];
+		for (int n = 0; n < 1000; ++n) {
+			FragmentData sut = new FragmentData(16, 1f);
+			for (int k = 0; k < 3; ++k) {
+				Circle circle = new Circle(
+						-1f + 3f * random.nextFloat(), -1f + 3f * random.nextFloat(), 1.5f * random.nextFloat());
+				boolean[][] expected = sut.getGridData();
+				int expectedCount = removePerPosition(sut, expected, expectedVertices, circle);
+
+				int actualCount = sut.removeWithPositions(actualVertices, 0, 10f, -5f, circle);
+
+				assertEquals(expectedCount, actualCount);
+				assertArrayEquals(Arrays.copyOf(expectedVertices, 2 * expectedCount),
+						Arrays.copyOf(actualVertices, 2 * actualCount), 0f);
+				assertTrue(Arrays.deepEquals(expected, sut.getGridData()));
+			}
+		}
+	}
+
+	private static int removePerPosition(FragmentData data, boolean[][] gridData, float[] outRemovedVertices,
+										 Circle circle) {
+		int count = 0;
+		for (int i = 0; i < gridData.length; ++i) {
+			for (int j = 0; j < gridData[i].length; ++j) {
+				float x = data.getRelativeX(i);
+				float y = data.getRelativeY(j);
+				if (gridData[i][j] && circle.contains(x, y)) {
+					gridData[i][j] = false;
+					outRemovedVertices[2 * count] = 10f + x;
+					outRemovedVertices[2 * count + 1] = -5f + y;
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void wordOperationsOnInitialGrid() {
+		assertEquals(11 * 11, sut.popCount());
+		assertTrue(sut.isFull());
+		assertFalse(sut.isEmpty());
+	}
+
+	@Test
+	public void wordOperationsAfterRemoval() {
+		sut.remove(new Circle(0f, 0f, 3f));
+
+		assertEquals(11 * 11 - 11, sut.popCount());
+		assertFalse(sut.isFull());
+		assertFalse(sut.isEmpty());
+		assertFalse(sut.isSet(0, 0));
+		assertTrue(sut.isSet(4, 0));
+	}
+
+	@Test
+	public void wordOperationsAfterFullRemoval() {
+		sut.remove(new Circle(0f, 0f, 15f));
+
+		assertEquals(0, sut.popCount());
+		assertFalse(sut.isFull());
+		assertTrue(sut.isEmpty());
+	}
+
+	@Test
+	public void maxResolution() {
+		FragmentData sut = new FragmentData(FragmentData.MAX_RESOLUTION, 1f);
+
+		assertEquals(FragmentData.MAX_RESOLUTION * FragmentData.MAX_RESOLUTION, sut.popCount());
+		assertTrue(sut.isFull());
+		assertEquals(-1L, sut.getColumn(0));
+	}
+
 	@Test
 	public void computeOutlines() {
 		FragmentData sut = new FragmentData(10f, new boolean[][] {
@@ -141,6 +224,171 @@ public class FragmentDataTest {
 		}, polygon2, EPSILON);
 	}
 
+	@Test
+	public void computeOutlinesIncrementallyMatchesFullComputation() {
+		Random random = new Random(7);
+		for (int n = 0; n < 200; ++n) {
+			FragmentData sut = new FragmentData(16, 1f);
+			sut.computeOutlines();
+			for (int k = 0; k < 8; ++k) {
+				Circle circle = new Circle(
+						-0.5f + 2f * random.nextFloat(), -0.5f + 2f * random.nextFloat(), 0.3f + 0.5f * random.nextFloat());
+				sut.remove(circle);
+
+				Array<float[]> actual = sut.computeOutlines();
+				Array<float[]> expected = new FragmentData(sut.getSize(), sut.getGridData()).computeOutlines();
+
+				assertEquals(expected.size, actual.size);
+				for (int i = 0; i < expected.size; ++i) {
+					assertArrayEquals(expected.get(i), actual.get(i), 0f);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void computeOutlinesOfBothEnginesCoverTheSameSolidArea() {
+		Random random = new Random(6);
+		for (int n = 0; n < 100; ++n) {
+			FragmentData sut = new FragmentData(4 + random.nextInt(29), 1f);
+			for (int k = 0; k < 8; ++k) {
+				Circle circle = new Circle(
+						-0.5f + 2f * random.nextFloat(), -0.5f + 2f * random.nextFloat(), 0.05f + 0.5f * random.nextFloat());
+				sut.remove(circle);
+
+				for (FragmentData.OutlineEngine engine : FragmentData.OutlineEngine.values()) {
+					Array<float[]> outlines = new FragmentData(sut.getSize(), sut.getGridData()).computeOutlines(engine);
+					assertCoversSolidArea(sut, engine, outlines);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks the properties both outline engines share, where the blocks of 2x2 grid positions
+	 * that are completely defined are covered by exactly one outline, and the empty blocks that
+	 * are connected to the border are not covered at all. The outlines themselves differ, because
+	 * only the tracing takes shortcuts, and marching squares drops parts without area.
+	 */
+	private static void assertCoversSolidArea(FragmentData data, FragmentData.OutlineEngine engine, Array<float[]> outlines) {
+		boolean[][] grid = data.getGridData();
+		float delta = data.getDelta();
+		for (float[] outline : outlines) {
+			float doubleArea = 0f;
+			for (int k = 0; k < outline.length; k += 2) {
+				int i = Math.round(outline[k] / delta);
+				int j = Math.round(outline[k + 1] / delta);
+				assertEquals(i * delta, outline[k], EPSILON);
+				assertEquals(j * delta, outline[k + 1], EPSILON);
+				assertTrue(engine + " vertex " + i + "," + j + " is defined", grid[i][j]);
+				int next = (k + 2) % outline.length;
+				doubleArea += outline[k] * outline[next + 1] - outline[next] * outline[k + 1];
+			}
+			assertTrue(engine + " outline is clock-wise", doubleArea < 0f);
+		}
+
+		int numBlocks = grid.length - 1;
+		boolean[][] outside = new boolean[numBlocks][numBlocks];
+		ArrayDeque<int[]> queue = new ArrayDeque<>();
+		for (int i = 0; i < numBlocks; ++i) {
+			for (int j = 0; j < numBlocks; ++j) {
+				boolean border = i == 0 || j == 0 || i == numBlocks - 1 || j == numBlocks - 1;
+				if (border && isEmptyBlock(grid, i, j)) {
+					outside[i][j] = true;
+					queue.add(new int[] {i, j});
+				}
+			}
+		}
+		while (!queue.isEmpty()) {
+			int[] block = queue.poll();
+			for (int d = 0; d < 4; ++d) {
+				int i = block[0] + (d == 0 ? 1 : d == 1 ? -1 : 0);
+				int j = block[1] + (d == 2 ? 1 : d == 3 ? -1 : 0);
+				if (i >= 0 && j >= 0 && i < numBlocks && j < numBlocks && !outside[i][j] && isEmptyBlock(grid, i, j)) {
+					outside[i][j] = true;
+					queue.add(new int[] {i, j});
+				}
+			}
+		}
+
+		for (int i = 0; i < numBlocks; ++i) {
+			for (int j = 0; j < numBlocks; ++j) {
+				float x = (i + 0.5f) * delta;
+				float y = (j + 0.5f) * delta;
+				int count = 0;
+				for (float[] outline : outlines) {
+					if (Intersector.isPointInPolygon(outline, 0, outline.length, x, y)) {
+						count++;
+					}
+				}
+				if (grid[i][j] && grid[i + 1][j] && grid[i][j + 1] && grid[i + 1][j + 1]) {
+					assertEquals(engine + " covers block " + i + "," + j, 1, count);
+				} else if (outside[i][j]) {
+					assertEquals(engine + " leaves block " + i + "," + j + " empty", 0, count);
+				}
+			}
+		}
+	}
+
+	private static boolean isEmptyBlock(boolean[][] grid, int i, int j) {
+		return !grid[i][j] && !grid[i + 1][j] && !grid[i][j + 1] && !grid[i + 1][j + 1];
+	}
+
+	@Test
+	public void computeOutlinesReusesUntouchedClusters() {
+		FragmentData sut = new FragmentData(10f, new boolean[][] {
+				{T, T, T, F, F, F, F, F, F, F, F},
+				{T, T, T, F, F, F, F, F, F, F, F},
+				{T, T, T, F, F, F, F, F, F, F, F},
+				{F, F, F, F, F, F, F, F, F, F, F},
+				{F, F, F, F, F, F, F, F, F, F, F},
+				{F, F, F, F, F, F, F, F, F, F, F},
+				{F, F, F, F, F, F, F, F, F, F, F},
+				{F, F, F, F, F, F, F, F, F, F, F},
+				{F, F, F, F, F, F, F, T, T, T, T},
+				{F, F, F, F, F, F, F, T, T, T, T},
+				{F, F, F, F, F, F, F, T, T, T, T}
+		});
+		float[] untouched = sut.computeOutlines().get(0);
+
+		sut.remove(new Circle(10f, 10f, 1f));
+		Array<float[]> after = sut.computeOutlines();
+
+		Array<float[]> expected = new FragmentData(sut.getSize(), sut.getGridData()).computeOutlines();
+		assertEquals(2, after.size);
+		assertSame(untouched, after.get(0));
+		assertArrayEquals(expected.get(1), after.get(1), EPSILON);
+	}
+
+	@Test
+	public void computeOutlinesReusesReleasedOutlines() {
+		FragmentData sut = new FragmentData(16, 1f);
+		sut.remove(new Circle(0.5f, 0.5f, 0.3f));
+		float[] released = sut.computeOutlines().get(0);
+		float[] expected = released.clone();
+
+		sut.releaseOutlines();
+		Array<float[]> result = sut.computeOutlines();
+
+		assertEquals(1, result.size);
+		assertSame(released, result.get(0));
+		assertArrayEquals(expected, result.get(0), 0f);
+	}
+
+	@Test
+	public void computeOutlinesReusesResultArray() {
+		FragmentData sut = new FragmentData(16, 1f);
+		Array<float[]> before = sut.computeOutlines();
+
+		sut.remove(new Circle(0.5f, 0.5f, 0.3f));
+		Array<float[]> after = sut.computeOutlines();
+
+		assertSame(before, after);
+		assertEquals(1, after.size);
+		assertArrayEquals(new FragmentData(sut.getSize(), sut.getGridData()).computeOutlines().get(0),
+				after.get(0), EPSILON);
+	}
+
 	@Test
 	public void computeOutlinesDefaultGrid() {
 		FragmentData sut = new FragmentData(4, 3f);
@@ -167,4 +415,119 @@ public class FragmentDataTest {
 		}, polygon, EPSILON);
 	}
 
+	@Test
+	public void solidTemplateIsShared() {
+		FragmentData template = FragmentData.getSolidTemplate(16, 1f);
+
+		assertSame(template, FragmentData.getSolidTemplate(16, 1f));
+		assertTrue(template.isTemplate());
+		assertTrue(template.isFull());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void solidTemplateCannotBeModified() {
+		FragmentData.getSolidTemplate(16, 1f).remove(new Circle(0.5f, 0.5f, 0.25f));
+	}
+
+	@Test
+	public void copyOfSolidTemplateIsIndependent() {
+		FragmentData template = FragmentData.getSolidTemplate(16, 1f);
+		FragmentData copy = template.copy();
+
+		assertTrue(copy.remove(new Circle(0.5f, 0.5f, 0.25f)));
+
+		assertFalse(copy.isTemplate());
+		assertFalse(copy.isFull());
+		assertTrue(template.isFull());
+	}
+
+	@Test
+	public void wouldRemoveDoesNotModifyTheTemplate() {
+		FragmentData template = FragmentData.getSolidTemplate(16, 1f);
+
+		// the circle lies between the grid positions
+		assertFalse(template.wouldRemove(new Circle(0.5f / 15f, 0.5f / 15f, 0.01f)));
+		assertTrue(template.wouldRemove(new Circle(7f / 15f, 7f / 15f, 0.01f)));
+		assertTrue(template.isFull());
+	}
+
+	@Test
+	public void removedBoundsCoverRemovedGridPositionsUntilCleared() {
+		FragmentData sut = new FragmentData(16, 1f);
+		assertFalse(sut.hasRemovedBounds());
+
+		sut.remove(new Circle(5f / 15f, 6f / 15f, 0.5f / 15f));
+		sut.remove(new Circle(9f / 15f, 3f / 15f, 1.5f / 15f));
+
+		assertTrue(sut.hasRemovedBounds());
+		assertEquals(5, sut.getRemovedMinI());
+		assertEquals(10, sut.getRemovedMaxI());
+		assertEquals(2, sut.getRemovedMinJ());
+		assertEquals(6, sut.getRemovedMaxJ());
+
+		sut.computeOutlines();
+		assertTrue(sut.hasRemovedBounds());
+
+		sut.clearRemovedBounds();
+		assertFalse(sut.hasRemovedBounds());
+	}
+
+	@Test
+	public void downsampleMarksBlockSolidWhenAnyCellSolid() {
+		FragmentData sut = new FragmentData(10f, new boolean[][] {
+				{T, F, T, F, T},
+				{F, F, F, F, F},
+				{T, F, F, F, T},
+				{F, F, F, F, F},
+				{F, F, T, F, T}
+		});
+
+		FragmentData result = sut.downsample(3);
+
+		assertEquals(3, result.getResolution());
+		assertEquals(10f, result.getSize(), EPSILON);
+		assertTrue(Arrays.deepEquals(new boolean[][] {
+				{T, T, T},
+				{T, F, T},
+				{F, T, T}
+		}, result.getGridData()));
+	}
+
+	@Test
+	public void downsampleKeepsGridPositionsBetweenSamples() {
+		FragmentData sut = new FragmentData(10f, new boolean[][] {
+				{T, T, T, T, T, T, T},
+				{F, F, F, F, F, F, F},
+				{T, F, T, T, T, F, F},
+				{F, F, F, F, F, F, F},
+				{F, F, F, F, F, F, F},
+				{F, F, F, F, F, F, F},
+				{F, F, F, F, F, F, T}
+		});
+
+		FragmentData result = sut.downsample(3);
+
+		assertTrue(Arrays.deepEquals(new boolean[][] {
+				{T, T, T},
+				{T, T, F},
+				{F, F, T}
+		}, result.getGridData()));
+	}
+
+	@Test(timeout = 10000)
+	public void computeOutlinesOfDownsampledCarvedDataTerminates() {
+		Random random = new Random(18);
+		for (int sequence = 0; sequence < 200; ++sequence) {
+			FragmentData sut = new FragmentData(16, 1f);
+			for (float radius = 0.05f; radius < 0.5f; radius += 0.15f) {
+				sut.remove(new Circle(random.nextFloat(), random.nextFloat(), radius));
+				sut.downsample(6).computeOutlines();
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void downsampleRequiresEvenSampling() {
+		new FragmentData(16, 1f).downsample(5);
+	}
 }
@@ -0,0 +1,105 @@
+package de.bsautermeister.bomb.objects;
+
+import com.badlogic.gdx.math.Circle;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FragmentGeometryCacheTest {
+	private static final Object VARIANT = FragmentData.OutlineEngine.CLUSTER_TRACING;
+
+	private FragmentGeometryCache sut;
+	private FloatArray polygons;
+	private IntArray vertexCounts;
+
+	@Before
+	public void setup() {
+		sut = new FragmentGeometryCache(2);
+		polygons = new FloatArray();
+		vertexCounts = new IntArray();
+	}
+
+	@Test
+	public void getMissesUnknownContents() {
+		assertFalse(sut.get(new FragmentData(16, 1f), VARIANT, polygons, vertexCounts));
+		assertEquals(0, sut.getHits());
+		assertEquals(1, sut.getMisses());
+	}
+
+	@Test
+	public void getHitsSameContents() {
+		sut.put(new FragmentData(16, 1f), VARIANT, FloatArray.with(0f, 0f, 0f, 1f, 1f, 0f), IntArray.with(3));
+
+		assertTrue(sut.get(new FragmentData(16, 1f), VARIANT, polygons, vertexCounts));
+		assertArrayEquals(new float[] { 0f, 0f, 0f, 1f, 1f, 0f }, polygons.toArray(), 0f);
+		assertArrayEquals(new int[] { 3 }, vertexCounts.toArray());
+		assertEquals(1, sut.getHits());
+		assertEquals(0, sut.getMisses());
+	}
+
+	@Test
+	public void getHitsIdenticallyCarvedContents() {
+		FragmentData first = new FragmentData(16, 1f);
+		first.remove(new Circle(0.5f, 0.5f, 0.25f));
+		FragmentData second = new FragmentData(16, 1f);
+		second.remove(new Circle(0.5f, 0.5f, 0.25f));
+		sut.put(first, VARIANT, FloatArray.with(1f, 2f, 3f), IntArray.with(3));
+
+		assertTrue(sut.get(second, VARIANT, polygons, vertexCounts));
+		assertFalse(sut.get(new FragmentData(16, 1f), VARIANT, polygons, vertexCounts));
+	}
+
+	@Test
+	public void getDistinguishesSizeAndVariant() {
+		sut.put(new FragmentData(16, 1f), VARIANT, new FloatArray(), new IntArray());
+
+		assertFalse(sut.get(new FragmentData(16, 2f), VARIANT, polygons, vertexCounts));
+		assertFalse(sut.get(new FragmentData(16, 1f), FragmentData.OutlineEngine.MARCHING_SQUARES,
+				polygons, vertexCounts));
+	}
+
+	@Test
+	public void putEvictsLeastRecentlyUsed() {
+		FragmentData full = new FragmentData(16, 1f);
+		FragmentData carved = new FragmentData(16, 1f);
+		carved.remove(new Circle(0f, 0f, 0.5f));
+		FragmentData other = new FragmentData(16, 1f);
+		other.remove(new Circle(1f, 1f, 0.5f));
+
+		sut.put(full, VARIANT, new FloatArray(), new IntArray());
+		sut.put(carved, VARIANT, new FloatArray(), new IntArray());
+		assertTrue(sut.get(full, VARIANT, polygons, vertexCounts));
+		sut.put(other, VARIANT, new FloatArray(), new IntArray());
+
+		assertEquals(2, sut.size());
+		assertTrue(sut.get(full, VARIANT, polygons, vertexCounts));
+		assertFalse(sut.get(carved, VARIANT, polygons, vertexCounts));
+		assertTrue(sut.get(other, VARIANT, polygons, vertexCounts));
+	}
+
+	@Test
+	public void putAfterEvictionStoresItsOwnContents() {
+		FragmentData full = new FragmentData(16, 1f);
+		FragmentData carved = new FragmentData(16, 1f);
+		carved.remove(new Circle(0f, 0f, 0.5f));
+		FragmentData other = new FragmentData(8, 1f);
+		other.remove(new Circle(1f, 1f, 0.5f));
+
+		sut.put(full, VARIANT, FloatArray.with(1f, 2f, 3f, 4f, 5f, 6f), IntArray.with(3));
+		sut.put(carved, VARIANT, FloatArray.with(7f, 8f), IntArray.with(1));
+		// reuses the evicted key and entry of the full fragment
+		sut.put(other, VARIANT, FloatArray.with(9f), IntArray.with(2, 3));
+
+		assertFalse(sut.get(full, VARIANT, polygons, vertexCounts));
+		assertTrue(sut.get(other, VARIANT, polygons, vertexCounts));
+		assertArrayEquals(new float[] { 9f }, polygons.toArray(), 0f);
+		assertArrayEquals(new int[] { 2, 3 }, vertexCounts.toArray());
+	}
+}
@@ -0,0 +1,186 @@
+package de.bsautermeister.bomb.objects;
+
+import com.badlogic.gdx.math.Intersector;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import de.bsautermeister.bomb.Cfg;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+public class GroundChunkTest {
+	private static final int CHUNK_SIZE = 4;
+	private static final int MIN_ROW = 4;
+	private static final int MIN_COL = 8;
+	private static final float SIZE = Cfg.Ground.FRAGMENT_SIZE_PPM;
+	private static final int CELLS = Cfg.Ground.FRAGMENT_RESOLUTION - 1;
+
+	private World world;
+	private Array<GroundChunk> dirtyChunks;
+	private GroundChunk sut;
+	private Array<Array<Fragment>> fragments;
+	private final float[] removedVertices = new float[2 * CHUNK_SIZE * CHUNK_SIZE
+			* Cfg.Ground.FRAGMENT_RESOLUTION * Cfg.Ground.FRAGMENT_RESOLUTION];
+
+	@BeforeClass
+	public static void setupClass() {
+		Box2D.init();
+	}
+
+	@Before
+	public void setup() {
+		world = new World(new Vector2(0f, -9.81f), true);
+		dirtyChunks = new Array<>();
+		sut = new GroundChunk(world, MIN_ROW, MIN_COL, CHUNK_SIZE, SIZE, true, dirtyChunks);
+		fragments = new Array<>();
+		for (int row = 0; row < MIN_ROW + CHUNK_SIZE; ++row) {
+			Array<Fragment> fragmentRow = new Array<>();
+			for (int col = 0; col < MIN_COL + CHUNK_SIZE; ++col) {
+				if (isInChunk(row, col)) {
+					Fragment fragment = new Fragment(world, col * SIZE, -(row + 1) * SIZE, SIZE);
+					fragment.setChunk(sut);
+					fragmentRow.add(fragment);
+				} else {
+					fragmentRow.add(null);
+				}
+			}
+			fragments.add(fragmentRow);
+		}
+		rebuild();
+	}
+
+	@After
+	public void teardown() {
+		FragmentData.setOutlineEngine(FragmentData.OutlineEngine.CLUSTER_TRACING);
+		world.dispose();
+	}
+
+	@Test
+	public void configuredSimplifyToleranceAppliesToFullResolution() {
+		assertEquals(Cfg.Ground.COLLISION_SIMPLIFY_TOLERANCE_PPM,
+				Fragment.getSimplifyTolerance(SIZE / CELLS), 0f);
+	}
+
+	@Test
+	public void stitchedGridMatchesFragmentGrids() {
+		Random random = new Random(22);
+		for (int impact = 0; impact < 20; ++impact) {
+			carveFromTop(random);
+			rebuild();
+
+			FragmentData stitched = sut.getStitchedData();
+			assertNotNull(stitched);
+			for (int row = MIN_ROW; row < MIN_ROW + CHUNK_SIZE; ++row) {
+				for (int col = MIN_COL; col < MIN_COL + CHUNK_SIZE; ++col) {
+					FragmentData data = fragments.get(row).get(col).getFragmentData();
+					int offsetI = (col - MIN_COL) * CELLS;
+					int offsetJ = (MIN_ROW + CHUNK_SIZE - 1 - row) * CELLS;
+					for (int i = 0; i < data.getResolution(); ++i) {
+						for (int j = 0; j < data.getResolution(); ++j) {
+							assertEquals(data.isSet(i, j), stitched.isSet(offsetI + i, offsetJ + j));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void incrementalStitchedOutlinesMatchFullComputation() {
+		FragmentData stitched = sut.getStitchedData();
+		Random random = new Random(23);
+		for (int impact = 0; impact < 20; ++impact) {
+			carveFromTop(random);
+			rebuild();
+
+			// carves only remove grid positions, so that the stitched grid gets updated in place
+			assertSame(stitched, sut.getStitchedData());
+			Array<float[]> actual = stitched.computeOutlines();
+			Array<float[]> expected = new FragmentData(
+					stitched.getSize(), stitched.getResolution(), stitched.copyColumns()).computeOutlines();
+			assertEquals(expected.size, actual.size);
+			for (int k = 0; k < expected.size; ++k) {
+				assertArrayEquals(expected.get(k), actual.get(k), 0f);
+			}
+		}
+	}
+
+	@Test
+	public void stitchedOutlinesCoverUnionOfFragmentOutlines() {
+		// marching squares shapes only depend on the grid positions of each cell, so that the
+		// stitched outlines have to cover exactly what the outlines of the fragments cover
+		FragmentData.setOutlineEngine(FragmentData.OutlineEngine.MARCHING_SQUARES);
+		Random random = new Random(24);
+		for (int impact = 0; impact < 10; ++impact) {
+			carveFromTop(random);
+			rebuild();
+
+			Array<float[]> stitchedOutlines = sut.getStitchedData().computeOutlines();
+			for (int sample = 0; sample < 2000; ++sample) {
+				float x = (MIN_COL + random.nextFloat() * CHUNK_SIZE) * SIZE;
+				float y = -(MIN_ROW + random.nextFloat() * CHUNK_SIZE) * SIZE;
+				int row = Math.min(MIN_ROW + CHUNK_SIZE - 1, (int) Math.floor(-y / SIZE));
+				int col = Math.min(MIN_COL + CHUNK_SIZE - 1, (int) Math.floor(x / SIZE));
+				Fragment fragment = fragments.get(row).get(col);
+
+				boolean inUnion = contains(fragment.getFragmentData().computeOutlines(),
+						x - fragment.getLeftX(), y - fragment.getBottomY());
+				boolean inStitched = contains(stitchedOutlines, x - sut.getX(), y - sut.getY());
+				assertEquals("at " + x + "," + y, inUnion, inStitched);
+			}
+		}
+	}
+
+	private static boolean isInChunk(int row, int col) {
+		return row >= MIN_ROW && row < MIN_ROW + CHUNK_SIZE && col >= MIN_COL && col < MIN_COL + CHUNK_SIZE;
+	}
+
+	/**
+	 * Carves a circle around the top of the chunk, so that the carved areas stay open to the top
+	 * and the outlines do not have any holes.
+	 */
+	private void carveFromTop(Random random) {
+		Vector2 position = new Vector2(
+				(MIN_COL + random.nextFloat() * CHUNK_SIZE) * SIZE,
+				-MIN_ROW * SIZE);
+		float radius = (0.3f + 2f * random.nextFloat()) * SIZE;
+		for (int row = MIN_ROW; row < MIN_ROW + CHUNK_SIZE; ++row) {
+			for (int col = MIN_COL; col < MIN_COL + CHUNK_SIZE; ++col) {
+				fragments.get(row).get(col).impact(removedVertices, 0, position, radius);
+			}
+		}
+	}
+
+	private void rebuild() {
+		for (int row = MIN_ROW; row < MIN_ROW + CHUNK_SIZE; ++row) {
+			for (int col = MIN_COL; col < MIN_COL + CHUNK_SIZE; ++col) {
+				fragments.get(row).get(col).rebuild();
+			}
+		}
+		for (int k = 0; k < dirtyChunks.size; ++k) {
+			dirtyChunks.get(k).rebuild(fragments);
+		}
+		dirtyChunks.clear();
+	}
+
+	private static boolean contains(Array<float[]> outlines, float x, float y) {
+		for (float[] outline : outlines) {
+			if (Intersector.isPointInPolygon(outline, 0, outline.length, x, y)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
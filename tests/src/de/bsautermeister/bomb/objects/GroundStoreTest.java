@@ -0,0 +1,85 @@
+package de.bsautermeister.bomb.objects;
+
+import com.badlogic.gdx.math.Circle;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GroundStoreTest {
+	private static final int NUM_COLS = 3;
+	private static final int RESOLUTION = 16;
+
+	private GroundStore sut;
+
+	@After
+	public void teardown() {
+		if (sut != null) {
+			sut.dispose();
+		}
+	}
+
+	@Test
+	public void getKindOfUnwrittenRowIsEmpty() {
+		sut = new GroundStore(NUM_COLS, RESOLUTION, null);
+
+		assertEquals(GroundStore.EMPTY, sut.getKind(100, 1));
+		assertEquals(0L, sut.getCapacityBytes());
+	}
+
+	@Test
+	public void writeAndReadInDirectBuffers() {
+		sut = new GroundStore(NUM_COLS, RESOLUTION, null);
+
+		assertRoundTrip();
+		assertFalse(sut.isSpilled());
+	}
+
+	@Test
+	public void writeAndReadInSpillFile() throws IOException {
+		File spillFile = File.createTempFile("ground", ".bin");
+		spillFile.deleteOnExit();
+		sut = new GroundStore(NUM_COLS, RESOLUTION, spillFile);
+
+		assertRoundTrip();
+		assertTrue(sut.isSpilled());
+
+		sut.dispose();
+		assertFalse(spillFile.exists());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void writeColumnsOfOtherResolutionFails() {
+		sut = new GroundStore(NUM_COLS, RESOLUTION, null);
+
+		sut.writeColumns(0, 0, new FragmentData(8, 1f));
+	}
+
+	private void assertRoundTrip() {
+		FragmentData carved = new FragmentData(RESOLUTION, 1f);
+		carved.remove(new Circle(0.5f, 0.5f, 0.3f));
+
+		// rows of different segments
+		sut.writeColumns(130, 2, carved);
+		sut.writeSolid(130, 1);
+		sut.writeEmpty(130, 0);
+		sut.writeSolid(0, 0);
+
+		assertEquals(GroundStore.CARVED, sut.getKind(130, 2));
+		assertEquals(GroundStore.SOLID, sut.getKind(130, 1));
+		assertEquals(GroundStore.EMPTY, sut.getKind(130, 0));
+		assertEquals(GroundStore.SOLID, sut.getKind(0, 0));
+		assertEquals(GroundStore.EMPTY, sut.getKind(64, 0));
+		assertArrayEquals(carved.copyColumns(), sut.readColumns(130, 2));
+		assertEquals(carved.getColumn(7), sut.readColumn(130, 2, 7));
+		assertEquals(0xFFFFL, sut.readColumn(130, 1, 7));
+		assertEquals(0L, sut.readColumn(130, 0, 7));
+	}
+}
@@ -0,0 +1,351 @@
+package de.bsautermeister.bomb.objects;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Box2D;
+import com.badlogic.gdx.physics.box2d.Fixture;
+import com.badlogic.gdx.physics.box2d.QueryCallback;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import de.bsautermeister.bomb.Cfg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GroundTest {
+	private static final int NUM_COLS = 4;
+	private static final int NUM_COMPLETE_ROWS = 3;
+	private static final float SIZE = 1f;
+	private static final int CELLS = Cfg.Ground.FRAGMENT_RESOLUTION - 1;
+
+	private World world;
+	private Ground sut;
+	private RecordingListener listener;
+	private final float[] removedVertices = new float[32 * 2 * Cfg.Ground.FRAGMENT_RESOLUTION * Cfg.Ground.FRAGMENT_RESOLUTION];
+
+	@BeforeClass
+	public static void setupClass() {
+		Box2D.init();
+	}
+
+	@Before
+	public void setup() {
+		world = new World(new Vector2(0f, -9.81f), true);
+		sut = new Ground(world, NUM_COLS, NUM_COMPLETE_ROWS, SIZE);
+		listener = new RecordingListener();
+		sut.addListener(listener);
+	}
+
+	@After
+	public void teardown() {
+		sut.dispose();
+		world.dispose();
+	}
+
+	@Test
+	public void carvePublishesCarvedGridPositions() {
+		sut.impact(removedVertices, new Vector2(1.5f * SIZE, -1.5f * SIZE), 0.2f * SIZE);
+		sut.flushImpacts();
+
+		assertEquals(1, listener.events.size);
+		Event event = listener.events.first();
+		assertEquals("carved", event.type);
+		assertEquals(1, event.row);
+		assertEquals(1, event.col);
+		// the grid positions within the circle around the center of fragment 1,1
+		assertEquals(CELLS + 5, event.minCellX);
+		assertEquals(CELLS + 10, event.maxCellX);
+		assertEquals(CELLS + 5, event.minCellY);
+		assertEquals(CELLS + 10, event.maxCellY);
+		assertVersionSequence();
+	}
+
+	@Test
+	public void impactBetweenGridPositionsKeepsFragmentSolid() {
+		Fragment fragment = new Fragment(world, 0f, -SIZE, SIZE);
+		float delta = SIZE / CELLS;
+
+		int removed = fragment.impact(removedVertices, 0,
+				new Vector2(0.5f * delta, -SIZE + 0.5f * delta), 0.1f * delta);
+
+		assertEquals(0, removed);
+		assertTrue(fragment.isSolid());
+	}
+
+	@Test
+	public void carveOfWholeFragmentPublishesEmptied() {
+		sut.impact(removedVertices, new Vector2(1.5f * SIZE, -1.5f * SIZE), 0.8f * SIZE);
+		sut.flushImpacts();
+
+		Event emptied = listener.find("emptied", 1, 1);
+		assertEquals(CELLS, emptied.minCellX);
+		assertEquals(CELLS, emptied.minCellY);
+		assertEquals(2 * CELLS, emptied.maxCellX);
+		assertEquals(2 * CELLS, emptied.maxCellY);
+		// the emptied fragment got carved as well, and its neighbors only got carved
+		assertTrue(listener.find("carved", 1, 1).version < emptied.version);
+		listener.find("carved", 0, 1);
+		listener.find("carved", 1, 0);
+		assertEquals(1, listener.count("emptied"));
+		assertVersionSequence();
+	}
+
+	@Test
+	public void rowAddedIsPublishedOnceTheRowIsCovered() {
+		listener.checkRowCovered = true;
+
+		sut.update();
+
+		Event added = listener.find("rowAdded", NUM_COMPLETE_ROWS, -1);
+		assertEquals(0, added.minCellX);
+		assertEquals(NUM_COMPLETE_ROWS * CELLS, added.minCellY);
+		assertEquals(NUM_COLS * CELLS, added.maxCellX);
+		assertEquals((NUM_COMPLETE_ROWS + 1) * CELLS, added.maxCellY);
+		assertTrue(listener.rowCovered);
+		assertVersionSequence();
+	}
+
+	@Test
+	public void rowEvictedIsPublishedWhenRowIsNotKeptAlive() {
+		for (int frame = 0; frame <= Cfg.Ground.EVICTION_DELAY_FRAMES + 1; ++frame) {
+			sut.update();
+		}
+
+		Event evicted = listener.find("rowEvicted", 0, -1);
+		assertEquals(0, evicted.minCellX);
+		assertEquals(0, evicted.minCellY);
+		assertEquals(NUM_COLS * CELLS, evicted.maxCellX);
+		assertEquals(CELLS, evicted.maxCellY);
+		assertTrue(sut.isRowEvicted(0));
+		assertVersionSequence();
+	}
+
+	@Test
+	public void carveIsPublishedBeforeRowGetsEvicted() {
+		sut.impact(removedVertices, new Vector2(1.5f * SIZE, -0.5f * SIZE), 0.2f * SIZE);
+		// the row gets evicted before the carve got flushed
+		for (int frame = 0; frame <= Cfg.Ground.EVICTION_DELAY_FRAMES + 1; ++frame) {
+			sut.update();
+		}
+		sut.flushImpacts();
+
+		Event carved = listener.find("carved", 0, 1);
+		assertTrue(carved.version < listener.find("rowEvicted", 0, -1).version);
+		assertEquals(1, listener.count("carved"));
+		assertVersionSequence();
+	}
+
+	@Test
+	public void refiningCoarseRowWithoutImpactCountsItsDetailChanges() {
+		// untouched fragments share the geometry of the template, whose detail does not change
+		for (int col = 0; col < NUM_COLS; ++col) {
+			sut.impact(removedVertices, new Vector2((col + 0.5f) * SIZE, -0.5f * SIZE), 0.2f * SIZE);
+		}
+		sut.flushImpacts();
+		for (int frame = 0; frame <= Cfg.Ground.COARSE_DELAY_FRAMES + NUM_COMPLETE_ROWS + 1; ++frame) {
+			sut.keepAlive(0f, -NUM_COMPLETE_ROWS * SIZE);
+			sut.update();
+		}
+		sut.flushImpacts();
+		assertTrue(sut.isRowCoarse(0));
+
+		sut.beginFrame();
+		sut.keepDetailed(-0.1f * SIZE, -0.9f * SIZE);
+		sut.update();
+		sut.flushImpacts();
+
+		assertFalse(sut.isRowCoarse(0));
+		assertEquals(0, sut.getFrameCarves());
+		assertEquals(NUM_COLS, sut.getFrameDetailChanges());
+		assertEquals(NUM_COLS, sut.getFrameRebuilds());
+		assertTrue(sut.getFrameRebuildsSaved() >= 0);
+	}
+
+	@Test
+	public void surfaceQueriesMatchBruteForceOnCarvedGround() {
+		Random random = new Random(24);
+		int numCellColumns = NUM_COLS * CELLS + 1;
+		for (int impact = 0; impact < 120; ++impact) {
+			// keep all rows alive, so that the brute force sees all fragments
+			sut.keepAlive(SIZE, -100f * SIZE);
+			sut.update();
+			sut.impact(removedVertices, new Vector2(random.nextFloat() * NUM_COLS * SIZE,
+					-random.nextFloat() * 4f * SIZE), (0.3f + random.nextFloat()) * SIZE);
+			sut.flushImpacts();
+			if (impact % 20 != 0) continue;
+
+			for (int c = 0; c < numCellColumns; ++c) {
+				float x = c * sut.getCellSize();
+				assertEquals("surface at " + c, toY(findSolidCell(c, 0)), sut.getSurfaceY(x), 1e-4f);
+				int fromCell = random.nextInt(sut.getFragments().size * CELLS);
+				assertEquals("first solid at " + c + " from " + fromCell, toY(findSolidCell(c, fromCell)),
+						sut.getFirstSolidY(x, -fromCell * sut.getCellSize()), 1e-4f);
+			}
+			for (int box = 0; box < 100; ++box) {
+				float minX = random.nextFloat() * NUM_COLS * SIZE;
+				float minY = -random.nextFloat() * 6f * SIZE;
+				float maxX = minX + random.nextFloat() * SIZE;
+				float maxY = minY + random.nextFloat() * SIZE;
+				assertEquals("box at " + minX + "," + minY, isOccupiedBruteForce(minX, minY, maxX, maxY),
+						sut.isOccupied(minX, minY, maxX, maxY));
+			}
+		}
+		assertFalse(sut.isRowEvicted(0));
+	}
+
+	private float toY(int cell) {
+		return cell < 0 ? Float.NEGATIVE_INFINITY : -cell * sut.getCellSize();
+	}
+
+	/**
+	 * Finds the first solid grid position counted from the top in the given grid column by
+	 * checking each grid position.
+	 */
+	private int findSolidCell(int c, int fromCell) {
+		for (int g = fromCell; g <= sut.getFragments().size * CELLS; ++g) {
+			if (isSolidCell(c, g)) {
+				return g;
+			}
+		}
+		return -1;
+	}
+
+	private boolean isOccupiedBruteForce(float minX, float minY, float maxX, float maxY) {
+		float cellSize = sut.getCellSize();
+		int minC = (int) Math.ceil(minX / cellSize - 1e-3f);
+		int maxC = Math.min(NUM_COLS * CELLS, (int) Math.floor(maxX / cellSize + 1e-3f));
+		int minG = Math.max(0, (int) Math.ceil(-maxY / cellSize - 1e-3f));
+		int maxG = (int) Math.floor(-minY / cellSize + 1e-3f);
+		for (int c = minC; c <= maxC; ++c) {
+			for (int g = minG; g <= maxG; ++g) {
+				if (isSolidCell(c, g)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks the grid position of the ground, which is shared by all fragments it borders on.
+	 */
+	private boolean isSolidCell(int c, int g) {
+		int row = g / CELLS;
+		int j = CELLS - g % CELLS;
+		return isSet(row, c, j) || g % CELLS == 0 && row > 0 && isSet(row - 1, c, 0);
+	}
+
+	private boolean isSet(int row, int c, int j) {
+		if (row >= sut.getFragments().size) {
+			return false;
+		}
+		Array<Fragment> fragmentRow = sut.getFragments().get(row);
+		int col = Math.min(c / CELLS, NUM_COLS - 1);
+		int i = c - col * CELLS;
+		Fragment fragment = fragmentRow.get(col);
+		boolean set = fragment != null && fragment.getFragmentData().isSet(i, j);
+		if (i == 0 && col > 0) {
+			Fragment left = fragmentRow.get(col - 1);
+			set |= left != null && left.getFragmentData().isSet(CELLS, j);
+		}
+		return set;
+	}
+
+	private void assertVersionSequence() {
+		long version = listener.events.first().version;
+		for (Event event : listener.events) {
+			assertEquals(version++, event.version);
+		}
+		assertEquals(version - 1, sut.getVersion());
+	}
+
+	private static class Event {
+		final String type;
+		final int row;
+		final int col;
+		final int minCellX;
+		final int minCellY;
+		final int maxCellX;
+		final int maxCellY;
+		final long version;
+
+		Event(String type, int row, int col, int minCellX, int minCellY, int maxCellX, int maxCellY, long version) {
+			this.type = type;
+			this.row = row;
+			this.col = col;
+			this.minCellX = minCellX;
+			this.minCellY = minCellY;
+			this.maxCellX = maxCellX;
+			this.maxCellY = maxCellY;
+			this.version = version;
+		}
+	}
+
+	private class RecordingListener implements GroundListener {
+		final Array<Event> events = new Array<>();
+		boolean checkRowCovered;
+		boolean rowCovered;
+
+		@Override
+		public void fragmentCarved(int row, int col, int minCellX, int minCellY, int maxCellX, int maxCellY, long version) {
+			events.add(new Event("carved", row, col, minCellX, minCellY, maxCellX, maxCellY, version));
+		}
+
+		@Override
+		public void fragmentEmptied(int row, int col, int minCellX, int minCellY, int maxCellX, int maxCellY, long version) {
+			events.add(new Event("emptied", row, col, minCellX, minCellY, maxCellX, maxCellY, version));
+		}
+
+		@Override
+		public void rowAdded(int row, int minCellX, int minCellY, int maxCellX, int maxCellY, long version) {
+			events.add(new Event("rowAdded", row, -1, minCellX, minCellY, maxCellX, maxCellY, version));
+			if (checkRowCovered) {
+				rowCovered = hasFixtureAt((NUM_COLS / 2 + 0.5f) * SIZE, -(row + 0.5f) * SIZE);
+			}
+		}
+
+		@Override
+		public void rowEvicted(int row, int minCellX, int minCellY, int maxCellX, int maxCellY, long version) {
+			events.add(new Event("rowEvicted", row, -1, minCellX, minCellY, maxCellX, maxCellY, version));
+		}
+
+		Event find(String type, int row, int col) {
+			for (Event event : events) {
+				if (event.type.equals(type) && event.row == row && event.col == col) {
+					return event;
+				}
+			}
+			throw new AssertionError("No " + type + " event of " + row + "," + col + ".");
+		}
+
+		int count(String type) {
+			int count = 0;
+			for (Event event : events) {
+				if (event.type.equals(type)) {
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+
+	private boolean hasFixtureAt(final float x, final float y) {
+		final boolean[] found = new boolean[1];
+		world.QueryAABB(new QueryCallback() {
+			@Override
+			public boolean reportFixture(Fixture fixture) {
+				found[0] |= fixture.testPoint(x, y);
+				return !found[0];
+			}
+		}, x - 0.01f, y - 0.01f, x + 0.01f, y + 0.01f);
+		return found[0];
+	}
+}
@@ -4,6 +4,7 @@ import org.junit.Test;
 
 import java.util.Arrays;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertTrue;
 
 public class ArrayUtilsTest {
@@ -39,6 +40,32 @@ public class ArrayUtilsTest {
         assertTrue(Arrays.deepEquals(expected, actual));
     }
 
+    @Test
+    public void toBitsAndBack() {
+        boolean[][] data = new boolean[][]{
+                {T, F, T},
+                {F, T, F}
+        };
+
+        long[] words = ArrayUtils.toBits(data);
+
+        assertArrayEquals(new long[] {5L, 2L}, words);
+        assertTrue(Arrays.deepEquals(data, ArrayUtils.fromBits(words, 3)));
+    }
+
+    @Test
+    public void copyBitsToInt() {
+        long[] words = new long[] {5L, 2L};
+        int[][] expected = new int[][]{
+                {1, 0, 1},
+                {0, 1, 0}
+        };
+
+        int[][] actual = ArrayUtils.copyToInt(words, 3, 1, 0);
+
+        assertTrue(Arrays.deepEquals(expected, actual));
+    }
+
     @Test
     public void replace2D() {
         int[][] data = new int[][] {
@@ -2,6 +2,7 @@ package de.bsautermeister.bomb.utils;
 
 import com.badlogic.gdx.math.GridPoint2;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
 
 import org.junit.Test;
 
@@ -451,4 +452,101 @@ public class ClusterUtilsTest {
 		assertEquals(new GridPoint2(2, 4), outlineResult.get(idx++));
 		assertEquals(new GridPoint2(4, 4), outlineResult.get(idx++));
 	}
+
+	@Test
+	public void computeClustersWithReusedContext() {
+		ClusterContext context = new ClusterContext();
+		context.load(ArrayUtils.toBits(new boolean[][]{
+				{T, T, T, T, T, T},
+				{T, T, T, T, T, T},
+				{T, T, T, T, T, T},
+				{T, T, T, T, T, T},
+				{T, T, T, T, T, T},
+				{T, T, T, T, T, T},
+		}), 6);
+		ClusterUtils.computeClusters(context);
+		assertEquals(1, context.getCount());
+
+		context.load(ArrayUtils.toBits(new boolean[][]{
+				{T, T, F, F},
+				{T, T, F, F},
+				{F, F, F, T},
+				{F, F, T, T},
+		}), 4);
+		ClusterUtils.computeClusters(context);
+
+		assertEquals(2, context.getCount());
+		assertEquals(0, context.getStartI(0));
+		assertEquals(0, context.getStartJ(0));
+		assertEquals(2, context.getStartI(1));
+		assertEquals(3, context.getStartJ(1));
+		assertEquals(0, context.getLabel(1, 1));
+		assertEquals(N, context.getLabel(2, 2));
+		assertEquals(1, context.getLabel(3, 3));
+	}
+
+	@Test
+	public void computeClusterOutlineWithContextAppendsToOutput() {
+		ClusterContext context = new ClusterContext();
+		context.load(new int[][]{
+				{N, N, N, N, N},
+				{N, N, N, 3, N},
+				{N, N, N, 3, 3},
+				{N, N, 3, 3, 3},
+				{N, N, N, N, 3},
+		});
+		IntArray outline = IntArray.with(-1, -1);
+
+		ClusterUtils.computeClusterOutline(context, 3, 3, 2, outline);
+
+		assertArrayEquals(new int[]{-1, -1, 3, 2, 1, 3, 2, 4, 4, 4}, outline.toArray());
+	}
+
+	@Test(timeout = 1000)
+	public void computeClusterOutlineAroundNotchTerminates() {
+		ClusterContext context = new ClusterContext();
+		context.load(ArrayUtils.toBits(new boolean[][]{
+				{T, T, T, T, T, T},
+				{T, T, T, T, T, T},
+				{T, T, T, T, T, T},
+				{T, T, T, F, T, T},
+				{T, T, F, F, F, T},
+				{T, T, F, F, F, T},
+		}), 6);
+		ClusterUtils.computeClusters(context);
+		IntArray outline = new IntArray();
+
+		ClusterUtils.computeClusterOutline(context, 0, context.getStartI(0), context.getStartJ(0), outline);
+
+		assertArrayEquals(new int[]{0, 0, 0, 5, 4, 5, 2, 3, 4, 1, 5, 1, 5, 0}, outline.toArray());
+	}
+
+	@Test(timeout = 1000)
+	public void computeClusterOutlineReenteringStartFromTheRightTerminates() {
+		ClusterContext context = new ClusterContext();
+		context.load(ArrayUtils.toBits(new boolean[][]{
+				{T, T, T, T, T},
+				{F, T, T, F, F},
+				{F, T, F, F, F},
+				{T, T, T, F, F},
+				{F, T, T, F, F},
+		}), 5);
+		ClusterUtils.computeClusters(context);
+		IntArray outline = new IntArray();
+
+		ClusterUtils.computeClusterOutline(context, 0, context.getStartI(0), context.getStartJ(0), outline);
+
+		assertArrayEquals(new int[]{0, 0, 0, 3, 2, 1, 3, 2, 4, 2, 4, 1, 3, 0, 2, 1, 1, 1}, outline.toArray());
+	}
+
+	@Test
+	public void computeClustersOnLargeGridWithoutStackOverflow() {
+		boolean[][] data = new boolean[512][512];
+		ArrayUtils.fill2D(data, true);
+
+		ClusterResult result = ClusterUtils.computeClusters(data);
+
+		assertEquals(1, result.getCount());
+		assertEquals(0, result.getData()[511][511]);
+	}
 }
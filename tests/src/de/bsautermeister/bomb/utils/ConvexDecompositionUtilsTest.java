@@ -0,0 +1,136 @@
+package de.bsautermeister.bomb.utils;
+
+import com.badlogic.gdx.math.EarClippingTriangulator;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConvexDecompositionUtilsTest {
+
+    private static final EarClippingTriangulator TRIANGULATOR = new EarClippingTriangulator();
+
+    @Test
+    public void decomposeSquareToSinglePolygon() {
+        float[] vertices = new float[] {
+                0f, 0f,
+                0f, 1f,
+                1f, 1f,
+                1f, 0f
+        };
+        FloatArray polygons = new FloatArray();
+        IntArray vertexCounts = new IntArray();
+
+        ConvexDecompositionUtils.decompose(vertices, TRIANGULATOR.computeTriangles(vertices), 8,
+                polygons, vertexCounts);
+
+        assertArrayEquals(new int[] { 4 }, vertexCounts.toArray());
+        assertEquals(1f, area(polygons.items, 0, 4), 1e-6f);
+    }
+
+    @Test
+    public void decomposeRemovesCollinearVertices() {
+        float[] vertices = new float[] {
+                0f, 0f,
+                0f, 0.5f,
+                0f, 1f,
+                1f, 1f,
+                1f, 0f
+        };
+        FloatArray polygons = new FloatArray();
+        IntArray vertexCounts = new IntArray();
+
+        ConvexDecompositionUtils.decompose(vertices, TRIANGULATOR.computeTriangles(vertices), 8,
+                polygons, vertexCounts);
+
+        assertArrayEquals(new int[] { 4 }, vertexCounts.toArray());
+    }
+
+    @Test
+    public void decomposeConcavePolygonToConvexPolygons() {
+        float[] vertices = new float[] {
+                0f, 0f,
+                0f, 2f,
+                1f, 2f,
+                1f, 1f,
+                2f, 1f,
+                2f, 0f
+        };
+        FloatArray polygons = new FloatArray();
+        IntArray vertexCounts = new IntArray();
+
+        ConvexDecompositionUtils.decompose(vertices, TRIANGULATOR.computeTriangles(vertices), 8,
+                polygons, vertexCounts);
+
+        assertEquals(2, vertexCounts.size);
+        assertConvexPartition(vertices, polygons, vertexCounts, 8);
+    }
+
+    @Test
+    public void decomposeRespectsMaxVertices() {
+        float[] vertices = PolygonUtils.createPolygon(1f, 16);
+        FloatArray polygons = new FloatArray();
+        IntArray vertexCounts = new IntArray();
+
+        ConvexDecompositionUtils.decompose(vertices, TRIANGULATOR.computeTriangles(vertices), 8,
+                polygons, vertexCounts);
+
+        assertTrue(vertexCounts.size < 14);
+        assertConvexPartition(vertices, polygons, vertexCounts, 8);
+    }
+
+    @Test
+    public void decomposeRandomStarPolygons() {
+        MathUtils.random.setSeed(42);
+        for (int n = 0; n < 100; ++n) {
+            int count = MathUtils.random(3, 16);
+            float[] vertices = new float[count * 4];
+            PolygonUtils.spikes(vertices, MathUtils.random(0.2f, 0.8f), 1f, count,
+                    Vector2.Zero, MathUtils.random(MathUtils.PI2));
+            FloatArray polygons = new FloatArray();
+            IntArray vertexCounts = new IntArray();
+
+            ConvexDecompositionUtils.decompose(vertices, TRIANGULATOR.computeTriangles(vertices), 6,
+                    polygons, vertexCounts);
+
+            assertConvexPartition(vertices, polygons, vertexCounts, 6);
+        }
+    }
+
+    private static void assertConvexPartition(float[] vertices, FloatArray polygons, IntArray vertexCounts,
+                                              int maxVertices) {
+        float totalArea = 0f;
+        int offset = 0;
+        for (int p = 0; p < vertexCounts.size; ++p) {
+            int count = vertexCounts.get(p);
+            assertTrue(count >= 3 && count <= maxVertices);
+            for (int k = 0; k < count; ++k) {
+                int a = offset + 2 * k;
+                int b = offset + 2 * ((k + 1) % count);
+                int c = offset + 2 * ((k + 2) % count);
+                float cross = (polygons.get(b) - polygons.get(a)) * (polygons.get(c + 1) - polygons.get(b + 1))
+                        - (polygons.get(b + 1) - polygons.get(a + 1)) * (polygons.get(c) - polygons.get(b));
+                assertTrue(cross > 0f);
+            }
+            totalArea += area(polygons.items, offset, count);
+            offset += 2 * count;
+        }
+        assertEquals(Math.abs(area(vertices, 0, vertices.length / 2)), totalArea, 1e-4f);
+    }
+
+    private static float area(float[] vertices, int offset, int count) {
+        float area = 0f;
+        for (int k = 0; k < count; ++k) {
+            int a = offset + 2 * k;
+            int b = offset + 2 * ((k + 1) % count);
+            area += vertices[a] * vertices[b + 1] - vertices[b] * vertices[a + 1];
+        }
+        return area / 2f;
+    }
+}
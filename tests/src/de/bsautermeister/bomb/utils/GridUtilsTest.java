@@ -167,4 +167,25 @@ public class GridUtilsTest {
         assertTrue(GridUtils.hasConnectibleNeighborsLeftOrRight(data, 2, 2, 3, 3, N));
         assertTrue(GridUtils.hasConnectibleNeighborsLeftOrRight(data, 3, 3, 2, 2, N));
     }
+
+    @Test
+    public void nextDirectionInverse() {
+        for (int di = -1; di <= 1; ++di) {
+            for (int dj = -1; dj <= 1; ++dj) {
+                if (di == 0 && dj == 0) continue;
+                int direction = GridUtils.direction(di, dj);
+                assertEquals(direction, GridUtils.nextCCWInner8(GridUtils.nextCWInner8(direction)));
+                assertEquals(direction, GridUtils.nextCCWInner16(GridUtils.nextCWInner16(direction)));
+            }
+        }
+    }
+
+    @Test
+    public void nextDirectionNotOnCircle() {
+        assertEquals(GridUtils.NO_DIRECTION, GridUtils.direction(3, 0));
+        assertEquals(GridUtils.NO_DIRECTION, GridUtils.nextCWInner8(GridUtils.direction(0, 0)));
+        assertEquals(GridUtils.NO_DIRECTION, GridUtils.nextCWInner8(GridUtils.direction(1, 2)));
+        assertEquals(GridUtils.NO_DIRECTION, GridUtils.nextCWOuter12(GridUtils.direction(1, 1)));
+        assertEquals(GridUtils.NO_DIRECTION, GridUtils.nextCWInner16(GridUtils.NO_DIRECTION));
+    }
 }
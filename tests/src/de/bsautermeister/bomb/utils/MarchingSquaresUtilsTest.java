@@ -0,0 +1,103 @@
+package de.bsautermeister.bomb.utils;
+
+import com.badlogic.gdx.utils.Array;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MarchingSquaresUtilsTest {
+
+    private static final boolean T = true;
+    private static final boolean F = false;
+
+    @Test
+    public void computeOutlinesForInitialGrid() {
+        long[] data = new long[4];
+        ArrayUtils.fillBits(data, 4);
+
+        Array<int[]> result = MarchingSquaresUtils.computeOutlines(data, 4);
+
+        assertEquals(1, result.size);
+        assertArrayEquals(new int[] {
+                0, 0,
+                0, 3,
+                3, 3,
+                3, 0
+        }, result.get(0));
+    }
+
+    @Test
+    public void computeOutlinesForEmptyGrid() {
+        long[] data = new long[4];
+
+        Array<int[]> result = MarchingSquaresUtils.computeOutlines(data, 4);
+
+        assertEquals(0, result.size);
+    }
+
+    @Test
+    public void computeOutlinesWithOutliersToBeRemoved() {
+        long[] data = ArrayUtils.toBits(new boolean[][]{
+                {F, F, F, F, F, F, F, F, F, F, F},
+                {F, F, T, T, F, F, F, F, F, F, F},
+                {F, F, T, F, F, F, F, T, T, F, F},
+                {F, F, F, F, F, F, F, F, F, F, F},
+                {F, F, F, F, F, F, F, F, F, F, F},
+                {F, F, T, T, T, T, T, F, T, F, F},
+                {F, F, F, F, F, T, T, F, T, F, F},
+                {F, F, F, F, F, F, F, F, T, T, F},
+                {F, F, F, F, F, F, F, F, T, T, F},
+                {F, F, T, F, F, F, F, F, T, F, F},
+                {F, F, T, F, F, F, F, F, T, F, F}
+        });
+
+        Array<int[]> result = MarchingSquaresUtils.computeOutlines(data, 11);
+
+        assertEquals(3, result.size);
+        assertArrayEquals(new int[] {1, 2, 1, 3, 2, 2}, result.get(0));
+        assertArrayEquals(new int[] {5, 4, 5, 6, 6, 6, 6, 5}, result.get(1));
+        assertArrayEquals(new int[] {6, 8, 7, 9, 8, 9, 9, 8}, result.get(2));
+    }
+
+    @Test
+    public void computeOutlinesWithoutHoles() {
+        long[] data = ArrayUtils.toBits(new boolean[][]{
+                {T, T, T, T, T},
+                {T, T, T, T, T},
+                {T, T, F, T, T},
+                {T, T, T, T, T},
+                {T, T, T, T, T}
+        });
+
+        Array<int[]> result = MarchingSquaresUtils.computeOutlines(data, 5);
+
+        assertEquals(1, result.size);
+        assertArrayEquals(new int[] {
+                0, 0,
+                0, 4,
+                4, 4,
+                4, 0
+        }, result.get(0));
+    }
+
+    @Test
+    public void computeOutlinesWithDiagonalCut() {
+        long[] data = ArrayUtils.toBits(new boolean[][]{
+                {T, T, T, T},
+                {T, T, T, F},
+                {T, T, F, F},
+                {T, F, F, F}
+        });
+
+        Array<int[]> result = MarchingSquaresUtils.computeOutlines(data, 4);
+
+        assertEquals(1, result.size);
+        assertArrayEquals(new int[] {
+                0, 0,
+                0, 3,
+                3, 0
+        }, result.get(0));
+    }
+}
@@ -0,0 +1,58 @@
+package de.bsautermeister.bomb.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PolygonUtilsTest {
+
+    @Test
+    public void simplifyOutlineRemovesCollinearVertices() {
+        float[] outline = new float[] {
+                0f, 0f,
+                0.5f, 0f,
+                1f, 0f,
+                1f, 0.5f,
+                1f, 1f,
+                0.5f, 1f,
+                0f, 1f,
+                0f, 0.5f
+        };
+
+        float[] result = PolygonUtils.simplifyOutline(outline, 0.01f);
+
+        assertArrayEquals(new float[] { 0f, 0f, 1f, 0f, 1f, 1f, 0f, 1f }, result, 0f);
+    }
+
+    @Test
+    public void simplifyOutlineKeepsDeviationsBeyondTolerance() {
+        float[] outline = new float[] {
+                0f, 0f,
+                0.5f, 0.05f,
+                1f, 0f,
+                1f, 1f,
+                0.5f, 0.8f,
+                0f, 1f
+        };
+
+        float[] result = PolygonUtils.simplifyOutline(outline, 0.1f);
+
+        assertArrayEquals(new float[] { 0f, 0f, 1f, 0f, 1f, 1f, 0.5f, 0.8f, 0f, 1f }, result, 0f);
+    }
+
+    @Test
+    public void simplifyOutlineWithoutToleranceKeepsOutline() {
+        float[] outline = new float[] { 0f, 0f, 0.5f, 0f, 1f, 0f, 1f, 1f };
+
+        assertSame(outline, PolygonUtils.simplifyOutline(outline, 0f));
+    }
+
+    @Test
+    public void simplifyOutlineDropsSliverWithinTolerance() {
+        float[] outline = new float[] { 0f, 0f, 0.5f, 0.01f, 1f, 0f, 0.5f, -0.01f };
+
+        assertNull(PolygonUtils.simplifyOutline(outline, 0.05f));
+    }
+}